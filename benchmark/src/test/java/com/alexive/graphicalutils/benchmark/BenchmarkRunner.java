@@ -0,0 +1,285 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A (very) small JMH look-alike: runs an operation for a few warm up iterations, then for a
+ * few measured ones, and reports its throughput. JMH itself can't run the code under test,
+ * which needs Robolectric's sandbox.
+ * <p>
+ * The results are written in JMH's JSON format (the fields tools like the JMH visualizer
+ * read), to the file given by the {@code benchmark.output} system property. Besides the
+ * throughput, the bytes allocated per operation are reported, like JMH's gc profiler does,
+ * when the JVM can count them.
+ * The iterations can be tuned with the {@code benchmark.warmupIterations},
+ * {@code benchmark.iterations} and {@code benchmark.iterationMillis} properties.
+ */
+public final class BenchmarkRunner {
+
+    private static final List<Result> RESULTS = new ArrayList<>();
+
+    private final int warmupIterations;
+    private final int iterations;
+    private final long iterationNanos;
+    private final Blackhole blackhole = new Blackhole();
+    private long iterationOps;
+
+    public BenchmarkRunner() {
+        warmupIterations = Integer.getInteger("benchmark.warmupIterations", 3);
+        iterations = Integer.getInteger("benchmark.iterations", 5);
+        iterationNanos = Long.getLong("benchmark.iterationMillis", 200L) * 1000000L;
+    }
+
+    /**
+     * Measures an operation's throughput and keeps the result, to be written by
+     * {@link #writeResults()}.
+     *
+     * @param name   The benchmark's name, e.g. {@code AdapterBenchmark.bind}
+     * @param params The parameters of this run (item type, header, ...), in the order they
+     *               should be reported
+     */
+    public Result run(String name, Map<String, String> params, Operation operation) {
+        for (int i = 0; i < warmupIterations; i++)
+            runIteration(operation);
+        double[] scores = new double[iterations];
+        long ops = 0;
+        long allocatedBefore = getAllocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            scores[i] = runIteration(operation);
+            ops += iterationOps;
+        }
+        long allocated = getAllocatedBytes() - allocatedBefore;
+        Result result = new Result(name, new LinkedHashMap<>(params), scores,
+                allocatedBefore < 0 ? Double.NaN : (double) allocated / ops);
+        synchronized (RESULTS) {
+            RESULTS.add(result);
+        }
+        return result;
+    }
+
+    /**
+     * @return ops/s
+     */
+    private double runIteration(Operation operation) {
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            //Checking the clock on every op would be measured as well
+            for (int i = 0; i < 16; i++)
+                operation.run(blackhole, ops++);
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        iterationOps = ops;
+        return ops * 1e9 / elapsed;
+    }
+
+    /**
+     * Runs an operation a number of times (after warming it up) and counts the bytes it
+     * allocates.
+     *
+     * @return The bytes allocated per operation, or NaN if the JVM can't count them.
+     */
+    public double measureAllocations(Operation operation, int ops) {
+        for (int i = 0; i < ops; i++)
+            operation.run(blackhole, i);
+        //What the counting itself allocates, if anything
+        long overheadStart = getAllocatedBytes();
+        long overhead = getAllocatedBytes() - overheadStart;
+        long before = getAllocatedBytes();
+        if (before < 0)
+            return Double.NaN;
+        for (int i = 0; i < ops; i++)
+            operation.run(blackhole, i);
+        long allocated = getAllocatedBytes() - before - overhead;
+        return (double) Math.max(allocated, 0) / ops;
+    }
+
+    /**
+     * @return The bytes the current thread has allocated so far, or -1 if the JVM can't tell.
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean))
+            return -1;
+        return ((com.sun.management.ThreadMXBean) threads)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Writes every result measured so far (by any runner) to the {@code benchmark.output}
+     * file. Does nothing if the property isn't set.
+     */
+    public static void writeResults() throws IOException {
+        String path = System.getProperty("benchmark.output");
+        if (path == null)
+            return;
+        File file = new File(path);
+        if (file.getParentFile() != null)
+            file.getParentFile().mkdirs();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write("[\n");
+            synchronized (RESULTS) {
+                for (int i = 0; i < RESULTS.size(); i++) {
+                    if (i > 0)
+                        writer.write(",\n");
+                    RESULTS.get(i).writeJson(writer);
+                }
+            }
+            writer.write("\n]\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String quote(String s) {
+        StringBuilder builder = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\')
+                builder.append('\\');
+            builder.append(c);
+        }
+        return builder.append('"').toString();
+    }
+
+    /**
+     * The code being measured.
+     */
+    public interface Operation {
+        /**
+         * @param blackhole Give it whatever the operation produces, so it isn't optimized away
+         * @param op        How many times the operation ran before, in this iteration
+         */
+        void run(Blackhole blackhole, long op);
+    }
+
+    /**
+     * Keeps the JIT from removing code whose results are never used.
+     */
+    public static final class Blackhole {
+
+        private int sink;
+        public volatile int escape;
+
+        public void consume(Object object) {
+            sink += System.identityHashCode(object);
+        }
+
+        public void consume(int value) {
+            sink += value;
+        }
+
+        public void consume(boolean value) {
+            sink += value ? 1 : 0;
+        }
+
+        Blackhole() {
+            //Read by no one, but the JIT can't know that
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override
+                public void run() {
+                    escape = sink;
+                }
+            });
+        }
+    }
+
+    public static final class Result {
+
+        private final String name;
+        private final Map<String, String> params;
+        private final double[] scores;
+        private final double bytesPerOp;
+
+        Result(String name, Map<String, String> params, double[] scores, double bytesPerOp) {
+            this.name = name;
+            this.params = params;
+            this.scores = scores;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        public double getScore() {
+            double sum = 0;
+            for (double score : scores)
+                sum += score;
+            return sum / scores.length;
+        }
+
+        /**
+         * Half the width of the 99.9% confidence interval, like JMH's (using the normal
+         * distribution instead of Student's t, close enough for a regression check).
+         */
+        public double getScoreError() {
+            if (scores.length < 2)
+                return Double.NaN;
+            double mean = getScore();
+            double variance = 0;
+            for (double score : scores)
+                variance += (score - mean) * (score - mean);
+            variance /= scores.length - 1;
+            return 3.29 * Math.sqrt(variance / scores.length);
+        }
+
+        void writeJson(Writer writer) throws IOException {
+            writer.write("  {\n    \"benchmark\": " + quote(name) + ",\n");
+            writer.write("    \"mode\": \"thrpt\",\n");
+            writer.write("    \"measurementIterations\": " + scores.length + ",\n");
+            writer.write("    \"params\": {");
+            boolean first = true;
+            for (Map.Entry<String, String> param : params.entrySet()) {
+                writer.write((first ? "" : ", ") + quote(param.getKey()) + ": " +
+                        quote(param.getValue()));
+                first = false;
+            }
+            writer.write("},\n    \"primaryMetric\": {\n");
+            writer.write("      \"score\": " + getScore() + ",\n");
+            double error = getScoreError();
+            writer.write("      \"scoreError\": " + (Double.isNaN(error) ? "\"NaN\"" : error) +
+                    ",\n");
+            writer.write("      \"scoreUnit\": \"ops/s\",\n      \"rawData\": [[");
+            for (int i = 0; i < scores.length; i++)
+                writer.write((i > 0 ? ", " : "") + scores[i]);
+            writer.write("]]\n    }");
+            if (!Double.isNaN(bytesPerOp)) {
+                writer.write(",\n    \"secondaryMetrics\": {\n");
+                writer.write("      \"\u00b7gc.alloc.rate.norm\": {\"score\": " + bytesPerOp +
+                        ", \"scoreUnit\": \"B/op\"}\n    }");
+            }
+            writer.write("\n  }");
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s: %.1f ± %.1f ops/s, %.1f B/op", name, params,
+                    getScore(), getScoreError(), bytesPerOp);
+        }
+    }
+}
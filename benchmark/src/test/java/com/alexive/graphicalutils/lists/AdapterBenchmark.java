@@ -0,0 +1,538 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import android.content.Context;
+import android.support.v7.view.ContextThemeWrapper;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.widget.ImageButton;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.alexive.graphicalutils.benchmark.BenchmarkRunner;
+import com.alexive.graphicalutils.benchmark.BuildConfig;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Throughput of the adapters' hot paths: creating holders, binding them, getting view types,
+ * deciding whether to draw dividers, checking ranges of items and finding items by key.
+ * Every {@link ListItemType} is measured, with and without a header view, as well as the
+ * {@link GridAdapter} with each {@link GridAdapter.DetailsType}.
+ * <p>
+ * {@link #bindDoesNotAllocate()} fails if the bind starts allocating.
+ * <p>
+ * Run it with {@code ./gradlew :benchmark:testDebugUnitTest}. Absolute numbers only make sense
+ * when compared with another run on the same machine.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class AdapterBenchmark {
+
+    /**
+     * Every SUBHEADER_EVERY items, one is a subheader.
+     */
+    private static final int SUBHEADER_EVERY = 10;
+    private static final int NUM_ITEMS = 1000;
+    private static final int PLACEHOLDER_EVERY = 7;
+    private static final boolean[] HEADER_CONFIGS = {false, true};
+
+    private final BenchmarkRunner runner = new BenchmarkRunner();
+    private Context context;
+    private RecyclerView parent;
+
+    @AfterClass
+    public static void writeResults() throws IOException {
+        BenchmarkRunner.writeResults();
+    }
+
+    @Before
+    public void setUp() {
+        context = new ContextThemeWrapper(RuntimeEnvironment.application,
+                android.support.v7.appcompat.R.style.Theme_AppCompat_Light);
+        parent = new RecyclerView(context);
+        parent.setLayoutManager(new LinearLayoutManager(context));
+    }
+
+    /**
+     * All the list types, GRID_ITEM aside (it's benchmarked through the GridAdapter).
+     */
+    private static List<ListItemType> listTypes() {
+        List<ListItemType> types = new ArrayList<>();
+        for (ListItemType type : ListItemType.values())
+            if (type != ListItemType.GRID_ITEM)
+                types.add(type);
+        return types;
+    }
+
+    private static Map<String, String> params(Object... keysAndValues) {
+        Map<String, String> params = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2)
+            params.put((String) keysAndValues[i], String.valueOf(keysAndValues[i + 1]));
+        return params;
+    }
+
+    private BenchmarkListAdapter createListAdapter(ListItemType type, boolean header) {
+        BenchmarkListAdapter adapter = new BenchmarkListAdapter(type);
+        if (header)
+            adapter.addHeaderView(new View(context));
+        adapter.setDividerStyle(Divider.Style.ALL_ITEMS);
+        adapter.setDividerColor(Divider.MATERIAL_LIGHT_DIVIDER_COLOR);
+        return adapter;
+    }
+
+    private BenchmarkGridAdapter createGridAdapter(GridAdapter.DetailsType detailsType,
+                                                   boolean header) {
+        BenchmarkGridAdapter adapter = new BenchmarkGridAdapter(detailsType);
+        if (header)
+            adapter.addHeaderView(new View(context));
+        parent.setLayoutManager(adapter.getGridLayoutManager(context, 3));
+        return adapter;
+    }
+
+    /**
+     * @return The adapter positions of the items whose view type is viewType.
+     */
+    private static int[] positionsOfType(BaseAdapter adapter, int viewType) {
+        int[] positions = new int[adapter.getItemCount()];
+        int count = 0;
+        for (int i = 0; i < adapter.getItemCount(); i++)
+            if (adapter.getItemViewType(i) == viewType)
+                positions[count++] = i;
+        int[] result = new int[count];
+        System.arraycopy(positions, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Index 0 is a subheader, index 1 an item of the adapter's type.
+     */
+    private static int viewTypeOf(BaseAdapter adapter, ListItemType type) {
+        return adapter.getItemViewType(
+                adapter.getRealAdapterPosition(type == ListItemType.SUB_HEADER ? 0 : 1));
+    }
+
+    @Test
+    public void createViewHolder() {
+        for (ListItemType type : listTypes())
+            for (boolean header : HEADER_CONFIGS)
+                for (final boolean inCode : new boolean[]{false, true}) {
+                    final BenchmarkListAdapter adapter = createListAdapter(type, header);
+                    adapter.setBuildItemViewsInCode(inCode);
+                    final int viewType = viewTypeOf(adapter, type);
+                    runner.run("AdapterBenchmark.createViewHolder",
+                            params("type", type, "header", header,
+                                    "views", inCode ? "code" : "xml"),
+                            new BenchmarkRunner.Operation() {
+                                @Override
+                                public void run(BenchmarkRunner.Blackhole blackhole, long op) {
+                                    blackhole.consume(
+                                            adapter.onCreateViewHolder(parent, viewType));
+                                }
+                            });
+                }
+    }
+
+    @Test
+    public void bindViewHolder() {
+        for (ListItemType type : listTypes())
+            for (boolean header : HEADER_CONFIGS)
+                for (boolean rowCallback : new boolean[]{true, false}) {
+                    final BenchmarkListAdapter adapter = createListAdapter(type, header);
+                    adapter.rowCallback = rowCallback;
+                    int viewType = viewTypeOf(adapter, type);
+                    final AwesomeViewHolder holder = adapter.createViewHolder(parent, viewType);
+                    final int[] positions = positionsOfType(adapter, viewType);
+                    runner.run("AdapterBenchmark.bindViewHolder",
+                            params("type", type, "header", header,
+                                    "callback", rowCallback ? "row" : "varargs"),
+                            new BenchmarkRunner.Operation() {
+                                @Override
+                                public void run(BenchmarkRunner.Blackhole blackhole, long op) {
+                                    adapter.bindViewHolder(holder,
+                                            positions[(int) (op % positions.length)]);
+                                }
+                            });
+                }
+    }
+
+    /**
+     * The library's part of the bind (everything but the framework's views) mustn't allocate,
+     * for any type of item: onBindViewHolder is run on real holders, dividers, checkboxes
+     * (hidden and shown), placeholders and checked-state payloads included. The texts aren't
+     * set, since the framework's (and Robolectric's) own allocations aren't ours to check, and
+     * neither are the subheaders, whose bind is only a setText.
+     */
+    @Test
+    public void bindDoesNotAllocate() {
+        for (ListItemType type : listTypes()) {
+            if (type == ListItemType.SUB_HEADER)
+                continue;
+            for (boolean header : HEADER_CONFIGS)
+                for (boolean checkBoxes : new boolean[]{false, true}) {
+                    BenchmarkListAdapter adapter = createListAdapter(type, header);
+                    adapter.setTexts = false;
+                    adapter.placeholders = true;
+                    adapter.setShowCheckBoxes(checkBoxes);
+                    adapter.checkRange(0, NUM_ITEMS / 2, true);
+                    int viewType = viewTypeOf(adapter, type);
+                    AwesomeViewHolder holder = adapter.createViewHolder(parent, viewType);
+                    String what = type + (header ? " with header" : "") +
+                            (checkBoxes ? " with checkboxes" : "");
+                    int[] positions = positionsOfType(adapter, viewType);
+                    assertNoAllocations(what, adapter, holder, positions, null);
+                    assertNoAllocations(what + " (checked payload)", adapter, holder, positions,
+                            Collections.singletonList(Payloads.CHECKED));
+                }
+        }
+        for (GridAdapter.DetailsType detailsType : GridAdapter.DetailsType.values()) {
+            BenchmarkGridAdapter adapter = createGridAdapter(detailsType, false);
+            adapter.setTexts = false;
+            int viewType = ListItemType.GRID_ITEM.resId;
+            AwesomeViewHolder holder = adapter.createViewHolder(parent, viewType);
+            assertNoAllocations("GRID_ITEM " + detailsType, adapter, holder,
+                    positionsOfType(adapter, viewType), null);
+        }
+    }
+
+    /**
+     * @param payloads If not null, the holder is bound with them.
+     */
+    private void assertNoAllocations(String what, final BaseAdapter adapter,
+                                     final AwesomeViewHolder holder, final int[] positions,
+                                     final List<Object> payloads) {
+        double bytesPerBind = runner.measureAllocations(new BenchmarkRunner.Operation() {
+            @Override
+            public void run(BenchmarkRunner.Blackhole blackhole, long op) {
+                int position = positions[(int) (op % positions.length)];
+                if (payloads == null)
+                    adapter.onBindViewHolder(holder, position);
+                else
+                    adapter.onBindViewHolder(holder, position, payloads);
+            }
+        }, 10000);
+        Assume.assumeFalse("This JVM can't count allocations", Double.isNaN(bytesPerBind));
+        Assert.assertTrue(what + " allocates " + bytesPerBind + " bytes per bind",
+                bytesPerBind < 1);
+    }
+
+    @Test
+    public void getItemViewType() {
+        for (ListItemType type : listTypes())
+            for (boolean header : HEADER_CONFIGS)
+                for (boolean cache : new boolean[]{false, true}) {
+                    final BenchmarkListAdapter adapter = createListAdapter(type, header);
+                    adapter.setViewTypeCacheEnabled(cache);
+                    final int count = adapter.getItemCount();
+                    runner.run("AdapterBenchmark.getItemViewType",
+                            params("type", type, "header", header, "viewTypeCache", cache),
+                            new BenchmarkRunner.Operation() {
+                                @Override
+                                public void run(BenchmarkRunner.Blackhole blackhole, long op) {
+                                    blackhole.consume(
+                                            adapter.getItemViewType((int) (op % count)));
+                                }
+                            });
+                }
+    }
+
+    @Test
+    public void drawDivider() {
+        for (ListItemType type : listTypes())
+            for (boolean header : HEADER_CONFIGS)
+                for (Divider.Style style : Divider.Style.values()) {
+                    final BenchmarkListAdapter adapter = createListAdapter(type, header);
+                    adapter.setDividerStyle(style);
+                    final int count = adapter.getNumItems();
+                    runner.run("AdapterBenchmark.drawDivider",
+                            params("type", type, "header", header, "style", style),
+                            new BenchmarkRunner.Operation() {
+                                @Override
+                                public void run(BenchmarkRunner.Blackhole blackhole, long op) {
+                                    blackhole.consume(adapter.drawDivider((int) (op % count)));
+                                }
+                            });
+                }
+    }
+
+    @Test
+    public void grid() {
+        for (GridAdapter.DetailsType detailsType : GridAdapter.DetailsType.values())
+            for (boolean header : HEADER_CONFIGS) {
+                final BenchmarkGridAdapter adapter = createGridAdapter(detailsType, header);
+                final int viewType = ListItemType.GRID_ITEM.resId;
+                runner.run("AdapterBenchmark.gridCreateViewHolder",
+                        params("details", detailsType, "header", header),
+                        new BenchmarkRunner.Operation() {
+                            @Override
+                            public void run(BenchmarkRunner.Blackhole blackhole, long op) {
+                                blackhole.consume(adapter.onCreateViewHolder(parent, viewType));
+                            }
+                        });
+
+                final AwesomeViewHolder holder = adapter.createViewHolder(parent, viewType);
+                final int[] positions = positionsOfType(adapter, viewType);
+                runner.run("AdapterBenchmark.gridBindViewHolder",
+                        params("details", detailsType, "header", header),
+                        new BenchmarkRunner.Operation() {
+                            @Override
+                            public void run(BenchmarkRunner.Blackhole blackhole, long op) {
+                                adapter.bindViewHolder(holder,
+                                        positions[(int) (op % positions.length)]);
+                            }
+                        });
+
+                final int count = adapter.getItemCount();
+                runner.run("AdapterBenchmark.gridGetItemViewType",
+                        params("details", detailsType, "header", header),
+                        new BenchmarkRunner.Operation() {
+                            @Override
+                            public void run(BenchmarkRunner.Blackhole blackhole, long op) {
+                                blackhole.consume(adapter.getItemViewType((int) (op % count)));
+                            }
+                        });
+
+                //What GridLayoutManager asks for every row it lays out, in no particular order
+                final GridLayoutManager.SpanSizeLookup lookup =
+                        ((GridLayoutManager) parent.getLayoutManager()).getSpanSizeLookup();
+                runner.run("AdapterBenchmark.gridGetSpanIndex",
+                        params("details", detailsType, "header", header),
+                        new BenchmarkRunner.Operation() {
+                            @Override
+                            public void run(BenchmarkRunner.Blackhole blackhole, long op) {
+                                int position = (int) (op * 7919 % count);
+                                blackhole.consume(lookup.getSpanIndex(position, 3));
+                                blackhole.consume(lookup.getSpanGroupIndex(position, 3));
+                            }
+                        });
+            }
+    }
+
+    /**
+     * Checking every item, then unchecking them, with ids that are the positions (a single
+     * range) and with scattered ones.
+     */
+    @Test
+    public void checkRange() {
+        for (final boolean consecutive : new boolean[]{true, false}) {
+            final BenchmarkListAdapter adapter = consecutive ?
+                    new BenchmarkListAdapter(ListItemType.ONE_TEXT_AND_AVATAR) :
+                    new ScatteredIdsListAdapter(ListItemType.ONE_TEXT_AND_AVATAR);
+            adapter.setHasConsecutiveIds(consecutive);
+            final int count = adapter.getNumItems();
+            runner.run("AdapterBenchmark.checkRange", params("consecutiveIds", consecutive),
+                    new BenchmarkRunner.Operation() {
+                        @Override
+                        public void run(BenchmarkRunner.Blackhole blackhole, long op) {
+                            adapter.checkRange(0, count, op % 2 == 0);
+                            blackhole.consume(adapter.getCheckedItemCount());
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Finding an item by its key, through the index of the items by id.
+     */
+    @Test
+    public void getIndexForKey() {
+        final BenchmarkListAdapter adapter =
+                new BenchmarkListAdapter(ListItemType.ONE_TEXT_AND_AVATAR);
+        final String[] keys = labels("key-");
+        adapter.setKeyProvider(new ListAdapter.KeyProvider<String>() {
+            @Override
+            public String getKey(int index) {
+                return keys[index];
+            }
+        });
+        runner.run("AdapterBenchmark.getIndexForKey", params(),
+                new BenchmarkRunner.Operation() {
+                    @Override
+                    public void run(BenchmarkRunner.Blackhole blackhole, long op) {
+                        String key = keys[(int) (op % keys.length)];
+                        blackhole.consume(adapter.getIndexForKey(key));
+                    }
+                });
+    }
+
+    private static String[] labels(String prefix) {
+        String[] labels = new String[NUM_ITEMS];
+        for (int i = 0; i < NUM_ITEMS; i++)
+            labels[i] = prefix + i;
+        return labels;
+    }
+
+    /**
+     * A list of NUM_ITEMS items of the same type, with a subheader every SUBHEADER_EVERY items.
+     * The data is built up front, so the bind only measures the adapter.
+     */
+    static class BenchmarkListAdapter extends ListAdapter {
+
+        private final ListItemType type;
+        private final String[] titles = labels("Title ");
+        private final String[] subtitles = labels("Subtitle ");
+        /**
+         * Whether to bind through {@link #bindDataToRow(int, ItemRow)} or the varargs callback.
+         */
+        boolean rowCallback = true;
+        /**
+         * If false, the views are only looked up, not changed: what's left is the library's
+         * own work.
+         */
+        boolean setTexts = true;
+        /**
+         * If true, every PLACEHOLDER_EVERY-th item is shown as a placeholder.
+         */
+        boolean placeholders = false;
+        int touched;
+
+        BenchmarkListAdapter(ListItemType type) {
+            this.type = type;
+        }
+
+        @Override
+        public String getSubHeaderText(int position) {
+            return titles[position];
+        }
+
+        @Override
+        public int getNumItems() {
+            return NUM_ITEMS;
+        }
+
+        @Override
+        public void bindDataToRow(int index, ItemRow row) {
+            if (!rowCallback) {
+                super.bindDataToRow(index, row);
+                return;
+            }
+            bindTexts(index, row.getText1(), row.getText2());
+        }
+
+        @Override
+        public void bindDataToListItem(int index, View itemView, ImageView iconOrAvatar,
+                                       ImageButton button, TextView... texts) {
+            bindTexts(index, texts[0], texts[1]);
+        }
+
+        @Override
+        protected boolean isPlaceholder(int index) {
+            return placeholders && index % PLACEHOLDER_EVERY == PLACEHOLDER_EVERY - 1;
+        }
+
+        @Override
+        boolean isLoaded(int index) {
+            return !isPlaceholder(index);
+        }
+
+        @Override
+        public void bindPlaceholder(int index, ItemRow row) {
+            if (setTexts)
+                super.bindPlaceholder(index, row);
+            else
+                touched += row.getText1() != null ? 1 : 0;
+        }
+
+        private void bindTexts(int index, TextView text1, TextView text2) {
+            if (!setTexts) {
+                touched += (text1 != null ? 1 : 0) + (text2 != null ? 1 : 0);
+                return;
+            }
+            text1.setText(titles[index]);
+            if (text2 != null)
+                text2.setText(subtitles[index]);
+        }
+
+        @Override
+        public ListItemType getListItemDataType(int index) {
+            return index % SUBHEADER_EVERY == 0 ? ListItemType.SUB_HEADER : type;
+        }
+    }
+
+    static class ScatteredIdsListAdapter extends BenchmarkListAdapter {
+
+        ScatteredIdsListAdapter(ListItemType type) {
+            super(type);
+        }
+
+        @Override
+        public long getIdForItem(int position) {
+            return position * 7919L;
+        }
+    }
+
+    static class BenchmarkGridAdapter extends GridAdapter {
+
+        private final String[] titles = labels("Title ");
+        private final String[] subtitles = labels("Subtitle ");
+        boolean setTexts = true;
+        int touched;
+
+        BenchmarkGridAdapter(DetailsType type) {
+            super(type);
+        }
+
+        @Override
+        public String getSubHeaderText(int position) {
+            return titles[position];
+        }
+
+        @Override
+        public int getNumItems() {
+            return NUM_ITEMS;
+        }
+
+        @Override
+        public void bindDataToRow(int index, ItemRow row) {
+            TextView text1 = row.getText1();
+            TextView text2 = row.getText2();
+            if (!setTexts) {
+                touched += (text1 != null ? 1 : 0) + (text2 != null ? 1 : 0) +
+                        (row.getImageView() != null ? 1 : 0);
+                return;
+            }
+            if (text1 != null)
+                text1.setText(titles[index]);
+            if (text2 != null)
+                text2.setText(subtitles[index]);
+        }
+
+        @Override
+        public ListItemType getListItemDataType(int index) {
+            return index % SUBHEADER_EVERY == 0 ? ListItemType.SUB_HEADER :
+                    ListItemType.GRID_ITEM;
+        }
+    }
+}
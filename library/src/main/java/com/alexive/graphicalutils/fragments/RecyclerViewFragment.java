@@ -18,6 +18,7 @@ package com.alexive.graphicalutils.fragments;
 
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
+import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.RecyclerView;
 import android.view.GestureDetector;
 import android.view.Gravity;
@@ -29,9 +30,12 @@ import android.widget.FrameLayout;
 import android.widget.TextView;
 
 import com.alexive.graphicalutils.R;
+import com.alexive.graphicalutils.lists.FastScroller;
 import com.alexive.graphicalutils.lists.ListAdapter;
+import com.alexive.graphicalutils.lists.ListItemType;
 import com.alexive.graphicalutils.lists.OnItemClickListener;
 import com.alexive.graphicalutils.lists.OnItemLongClickListener;
+import com.alexive.graphicalutils.lists.SharedViewPool;
 import com.alexive.graphicalutils.view.ViewUtils;
 
 /**
@@ -44,6 +48,12 @@ import com.alexive.graphicalutils.view.ViewUtils;
  */
 public class RecyclerViewFragment extends Fragment {
 
+    /**
+     * The adapter's state is saved in a Bundle of its own, so it can be kept apart from the
+     * rest of the fragment's state until it's restored.
+     */
+    private static final String STATE_CHECKED = "RecyclerViewFragment.checkedState";
+
     private RecyclerView mRecyclerView;
     private RecyclerView.Adapter adapter;
     private OnItemClickListener mClickListener;
@@ -53,6 +63,15 @@ public class RecyclerViewFragment extends Fragment {
     private View emptyView;
     private boolean emptyViewAddedToLayout = false;
     private boolean isEmptyViewEmptyText;
+    private int warmUpHoldersPerType = 0;
+    private ListItemType[] warmUpTypes;
+    private boolean useSharedViewPool = false;
+    private boolean fastScrollEnabled = false;
+    private FastScroller fastScroller;
+    /**
+     * The adapter's saved state, until it's restored into a {@link ListAdapter}.
+     */
+    private Bundle savedCheckedState;
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
@@ -61,6 +80,12 @@ public class RecyclerViewFragment extends Fragment {
                 container,
                 false);
         mRecyclerView = (RecyclerView) view.findViewById(R.id.recyclerView);
+        if (savedInstanceState != null)
+            savedCheckedState = savedInstanceState.getBundle(STATE_CHECKED);
+        if (useSharedViewPool)
+            mRecyclerView.setRecycledViewPool(SharedViewPool.getInstance(getActivity()));
+        if (fastScrollEnabled)
+            setFastScrollEnabled(true);
         if (this.adapter != null)
             setAdapter(adapter);
         if (this.emptyText != null)
@@ -99,12 +124,16 @@ public class RecyclerViewFragment extends Fragment {
         this.adapter = adapter;
         if (this.mRecyclerView == null)
             return;
+        if (warmUpHoldersPerType > 0 && adapter instanceof ListAdapter)
+            //Without a LayoutManager yet (e.g. it's set in onViewCreated), it waits for it
+            ((ListAdapter) adapter).warmUp(mRecyclerView, warmUpHoldersPerType, warmUpTypes);
         mRecyclerView.setAdapter(adapter);
         if (mOnItemTouchListener != null)
             mRecyclerView.removeOnItemTouchListener(mOnItemTouchListener);
         else
             mOnItemTouchListener = new Listener();
         if (adapter instanceof ListAdapter) {
+            restoreCheckedState((ListAdapter) adapter);
             if (mClickListener != null)
                 ((ListAdapter) adapter).setOnItemClickListener(mClickListener);
             if (mOnItemLongClickListener != null)
@@ -115,6 +144,101 @@ public class RecyclerViewFragment extends Fragment {
             actuallySetEmptyView();
     }
 
+    /**
+     * Saves the checked items of a {@link ListAdapter}, and whether the checkboxes or a
+     * {@link ListAdapter.ListCheckingActionMode} were shown. They're restored when the adapter
+     * is set again; see {@link #onCreateRestoredActionMode()}.
+     */
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (getAdapter() instanceof ListAdapter) {
+            Bundle state = new Bundle();
+            ((ListAdapter) getAdapter()).saveCheckedState(getContext(), state);
+            outState.putBundle(STATE_CHECKED, state);
+        } else if (savedCheckedState != null)
+            //The adapter wasn't set since, so it's still to be restored
+            outState.putBundle(STATE_CHECKED, savedCheckedState);
+    }
+
+    private void restoreCheckedState(ListAdapter listAdapter) {
+        if (savedCheckedState == null)
+            return;
+        Bundle state = savedCheckedState;
+        savedCheckedState = null;
+        if (!listAdapter.restoreCheckedState(state))
+            return;
+        final ListAdapter.ListCheckingActionMode actionMode = onCreateRestoredActionMode();
+        if (actionMode == null)
+            return;
+        //The activity may not be done restoring its own state yet
+        mRecyclerView.post(new Runnable() {
+            @Override
+            public void run() {
+                if (getActivity() instanceof AppCompatActivity && !isRemoving())
+                    ((AppCompatActivity) getActivity()).startSupportActionMode(actionMode);
+            }
+        });
+    }
+
+    /**
+     * Called when the adapter's checked items are restored and a
+     * {@link ListAdapter.ListCheckingActionMode} was active when they were saved. Return a new
+     * one (for {@link #getRecyclerView()}) and it's started again, with the checkboxes and the
+     * title of the restored items. The activity must be an AppCompatActivity.
+     * By default there's none, and the items stay checked without the checkboxes shown.
+     */
+    protected ListAdapter.ListCheckingActionMode onCreateRestoredActionMode() {
+        return null;
+    }
+
+    /**
+     * Makes the fragment pre-inflate, in the background, some list items before the first
+     * layout, so the first scroll is smoother. Only works with adapters derived from
+     * {@link ListAdapter}. If the RecyclerView's LayoutManager isn't set when the adapter is
+     * (e.g. it's set in onViewCreated), the items are inflated once it is.
+     * Call it before {@link #setAdapter(RecyclerView.Adapter)}.
+     *
+     * @param holdersPerType How many items of each type to pre-inflate, 0 to disable.
+     * @param types          The types of list items the adapter uses. If none are given, all
+     *                       of them are pre-inflated.
+     * @see ListAdapter#warmUp(RecyclerView, int, ListItemType...)
+     */
+    public void setWarmUp(int holdersPerType, ListItemType... types) {
+        warmUpHoldersPerType = holdersPerType;
+        warmUpTypes = types;
+    }
+
+    /**
+     * Makes the fragment's RecyclerView use the {@link SharedViewPool} of its Activity, so
+     * list items can be reused by other RecyclerViewFragments (e.g. in tabs) instead of
+     * being inflated again. Works best with adapters derived from {@link ListAdapter}.
+     */
+    public void setUseSharedViewPool(boolean useSharedViewPool) {
+        this.useSharedViewPool = useSharedViewPool;
+        if (mRecyclerView != null && useSharedViewPool)
+            mRecyclerView.setRecycledViewPool(SharedViewPool.getInstance(getActivity()));
+    }
+
+    /**
+     * Shows a fast scroll thumb while the list scrolls. With adapters derived from
+     * {@link ListAdapter}, dragging it shows the current section's subheader text.
+     * Disabled by default.
+     *
+     * @see FastScroller
+     */
+    public void setFastScrollEnabled(boolean enabled) {
+        fastScrollEnabled = enabled;
+        if (mRecyclerView == null)
+            return;
+        if (enabled) {
+            if (fastScroller == null)
+                fastScroller = new FastScroller(mRecyclerView.getContext());
+            fastScroller.attachToRecyclerView(mRecyclerView);
+        } else if (fastScroller != null)
+            fastScroller.detachFromRecyclerView();
+    }
+
     /**
      * Sets the callback to be called when the user clicks an item.
      */
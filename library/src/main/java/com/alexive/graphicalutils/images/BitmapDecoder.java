@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.images;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes images no larger than they're going to be shown.
+ */
+final class BitmapDecoder {
+
+    private BitmapDecoder() {
+    }
+
+    /**
+     * Decodes an image scaled down (never up) so it covers, at least, targetWidth x
+     * targetHeight, keeping its aspect ratio. A power of 2 is skipped by the decoder itself,
+     * what's left is scaled afterwards.
+     *
+     * @return The bitmap, or null if the image couldn't be decoded.
+     */
+    static Bitmap decode(ImageSource source, int targetWidth, int targetHeight)
+            throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decodeStream(source, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0)
+            return null;
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = computeSampleSize(options.outWidth, options.outHeight,
+                targetWidth, targetHeight);
+        Bitmap bitmap = decodeStream(source, options);
+        if (bitmap == null)
+            return null;
+
+        float scale = Math.max((float) targetWidth / bitmap.getWidth(),
+                (float) targetHeight / bitmap.getHeight());
+        if (scale >= 1f)
+            return bitmap;
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap,
+                Math.max(1, Math.round(bitmap.getWidth() * scale)),
+                Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+        if (scaled != bitmap)
+            bitmap.recycle();
+        return scaled;
+    }
+
+    /**
+     * @return The largest power of 2 that keeps the image, at least, as large as the target.
+     */
+    static int computeSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= targetWidth &&
+                height / (sampleSize * 2) >= targetHeight)
+            sampleSize *= 2;
+        return sampleSize;
+    }
+
+    private static Bitmap decodeStream(ImageSource source, BitmapFactory.Options options)
+            throws IOException {
+        InputStream stream = source.open();
+        try {
+            return BitmapFactory.decodeStream(stream, null, options);
+        } finally {
+            stream.close();
+        }
+    }
+}
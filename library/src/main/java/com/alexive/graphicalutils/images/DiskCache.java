@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.images;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Keeps downsampled bitmaps in a directory, so they don't have to be decoded (and scaled) from
+ * the originals again. When the files take more than maxBytes, the least recently used ones are
+ * deleted.
+ * <p>
+ * Files are named after a hash of the image's key and the size it was decoded to, so all the
+ * sizes of an image can be found (and evicted) together.
+ */
+final class DiskCache {
+
+    private final File directory;
+    private final long maxBytes;
+    /**
+     * Bytes taken by the files, -1 until the directory is listed.
+     */
+    private long size = -1;
+
+    DiskCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized Bitmap get(String key, int width, int height) {
+        File file = getFile(key, width, height);
+        if (!file.exists())
+            return null;
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+        if (bitmap == null) {
+            //Corrupted (e.g. the app was killed while writing it)
+            remove(file);
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return bitmap;
+    }
+
+    synchronized void put(String key, int width, int height, Bitmap bitmap) {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            return;
+        ensureSize();
+        File file = getFile(key, width, height);
+        File temp = new File(directory, file.getName() + ".tmp");
+        try {
+            OutputStream stream = new FileOutputStream(temp);
+            try {
+                //Avatars and icons may be transparent
+                bitmap.compress(bitmap.hasAlpha() ? Bitmap.CompressFormat.PNG :
+                        Bitmap.CompressFormat.JPEG, 90, stream);
+            } finally {
+                stream.close();
+            }
+        } catch (IOException ex) {
+            temp.delete();
+            return;
+        }
+        remove(file);
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return;
+        }
+        size += file.length();
+        trim();
+    }
+
+    /**
+     * Deletes every size of an image.
+     */
+    synchronized void evict(String key) {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+        String prefix = hash(key) + "_";
+        for (File file : files)
+            if (file.getName().startsWith(prefix))
+                remove(file);
+    }
+
+    synchronized void clear() {
+        File[] files = directory.listFiles();
+        if (files != null)
+            for (File file : files)
+                file.delete();
+        size = 0;
+    }
+
+    private void remove(File file) {
+        long length = file.length();
+        if (file.delete() && size >= 0)
+            size -= length;
+    }
+
+    private void ensureSize() {
+        if (size >= 0)
+            return;
+        size = 0;
+        File[] files = directory.listFiles();
+        if (files != null)
+            for (File file : files)
+                size += file.length();
+    }
+
+    private void trim() {
+        if (size <= maxBytes)
+            return;
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                long m1 = f1.lastModified();
+                long m2 = f2.lastModified();
+                return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+            }
+        });
+        //Down to 90%, so it isn't trimmed again on the next put
+        for (int i = 0; i < files.length && size > maxBytes * 9 / 10; i++)
+            remove(files[i]);
+    }
+
+    private File getFile(String key, int width, int height) {
+        return new File(directory, hash(key) + "_" + width + "x" + height);
+    }
+
+    /**
+     * 64 bit FNV-1a, in hex. Keys may be paths or uris, which aren't valid file names.
+     */
+    private static String hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return Long.toHexString(hash);
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.images;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.v4.util.LruCache;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.widget.ImageView;
+
+import com.alexive.graphicalutils.R;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads images into ImageViews (e.g. the list items' avatars or the grid items' images)
+ * off the main thread:
+ * <ul>
+ * <li>images are decoded in a background pool, downsampled to the size of the view they're
+ * loaded into;</li>
+ * <li>the decoded bitmaps are kept in an LRU memory cache, limited in bytes, and optionally
+ * in a disk cache, so they aren't decoded from the original again;</li>
+ * <li>each load is bound to its ImageView: loading another image into it, or recycling the
+ * list item it belongs to (this library's adapters do it), cancels the previous one.</li>
+ * </ul>
+ * Usage, in {@link com.alexive.graphicalutils.lists.BaseAdapter#bindDataToRow}:
+ * <pre>
+ * ImageLoader.getInstance(context).load(ImageSource.fromFile(file), row.getImageView());
+ * </pre>
+ * Must be used from the main thread.
+ */
+public class ImageLoader {
+
+    private static ImageLoader instance;
+
+    private final MemoryCache memoryCache;
+    private final DiskCache diskCache;
+    private final ExecutorService decodePool;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public ImageLoader(Config config) {
+        memoryCache = new MemoryCache(config.memoryCacheBytes);
+        diskCache = config.diskCacheDir != null ?
+                new DiskCache(config.diskCacheDir, config.diskCacheBytes) : null;
+        decodePool = Executors.newFixedThreadPool(config.decodeThreads, new DecodeThreadFactory());
+    }
+
+    /**
+     * @return The loader shared by the whole app, with the default {@link Config}.
+     */
+    public static synchronized ImageLoader getInstance(Context context) {
+        if (instance == null)
+            instance = new ImageLoader(new Config(context));
+        return instance;
+    }
+
+    /**
+     * Loads an image into an ImageView, downsampled to the view's size (or, if it hasn't been
+     * laid out yet, the size in its LayoutParams; if that isn't known either, the load starts
+     * once the view is measured). The view is cleared until the image is ready, unless it's
+     * in the memory cache.
+     */
+    public void load(ImageSource source, ImageView target) {
+        int width = target.getWidth();
+        int height = target.getHeight();
+        ViewGroup.LayoutParams params = target.getLayoutParams();
+        if ((width <= 0 || height <= 0) && params != null) {
+            width = params.width;
+            height = params.height;
+        }
+        if (width > 0 && height > 0)
+            load(source, target, width, height);
+        else {
+            cancel(target);
+            target.setImageDrawable(null);
+            new SizeWaiter(source, target).start();
+        }
+    }
+
+    /**
+     * Same as {@link #load(ImageSource, ImageView)} but with a given size.
+     */
+    public void load(ImageSource source, ImageView target, int width, int height) {
+        cancel(target);
+        String key = getCacheKey(source, width, height);
+        Bitmap cached = memoryCache.get(key);
+        if (cached != null) {
+            target.setImageBitmap(cached);
+            return;
+        }
+        target.setImageDrawable(null);
+        Request request = new Request(source, key, target, width, height);
+        target.setTag(R.id.image_loader_request, request);
+        request.future = decodePool.submit(request);
+    }
+
+    /**
+     * Cancels the load bound to an ImageView, if there's one.
+     */
+    public static void cancel(ImageView target) {
+        if (target == null)
+            return;
+        Object tag = target.getTag(R.id.image_loader_request);
+        if (tag instanceof Cancellable)
+            ((Cancellable) tag).cancel();
+        target.setTag(R.id.image_loader_request, null);
+    }
+
+    /**
+     * Removes every size of an image from the caches, e.g. because the file changed.
+     */
+    public void evict(final ImageSource source) {
+        String prefix = source.getKey() + "#";
+        for (Map.Entry<String, Bitmap> entry : memoryCache.snapshot().entrySet())
+            if (entry.getKey().startsWith(prefix))
+                memoryCache.remove(entry.getKey());
+        if (diskCache != null)
+            decodePool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    diskCache.evict(source.getKey());
+                }
+            });
+    }
+
+    /**
+     * Empties the memory cache, e.g. in {@code onTrimMemory}. The disk cache is kept.
+     */
+    public void clearMemoryCache() {
+        memoryCache.evictAll();
+    }
+
+    private static String getCacheKey(ImageSource source, int width, int height) {
+        return source.getKey() + "#" + width + "x" + height;
+    }
+
+    private interface Cancellable {
+        void cancel();
+    }
+
+    /**
+     * The loader's settings. Change the fields you need before creating the loader.
+     */
+    public static class Config {
+        /**
+         * Bytes the memory cache may take. Defaults to 1/8 of the app's heap.
+         */
+        public int memoryCacheBytes;
+        /**
+         * Where the disk cache keeps its files, or null for no disk cache. Defaults to a
+         * directory in the app's cache dir.
+         */
+        public File diskCacheDir;
+        /**
+         * Bytes the disk cache may take. Defaults to 20MB.
+         */
+        public long diskCacheBytes = 20 * 1024 * 1024;
+        /**
+         * How many images are decoded at once. Defaults to 2.
+         */
+        public int decodeThreads = 2;
+
+        public Config(Context context) {
+            memoryCacheBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 8,
+                    Integer.MAX_VALUE);
+            diskCacheDir = new File(context.getCacheDir(), "graphicalutils-images");
+        }
+    }
+
+    private static class MemoryCache extends LruCache<String, Bitmap> {
+
+        MemoryCache(int maxBytes) {
+            super(Math.max(maxBytes, 1));
+        }
+
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getRowBytes() * value.getHeight();
+        }
+    }
+
+    private static class DecodeThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    //Don't compete with the UI thread
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "ImageLoader-" + count.incrementAndGet());
+        }
+    }
+
+    /**
+     * Waits for a view to be measured before loading an image into it.
+     */
+    private class SizeWaiter implements ViewTreeObserver.OnPreDrawListener, Cancellable {
+
+        private final ImageSource source;
+        private final ImageView target;
+
+        SizeWaiter(ImageSource source, ImageView target) {
+            this.source = source;
+            this.target = target;
+        }
+
+        void start() {
+            target.setTag(R.id.image_loader_request, this);
+            target.getViewTreeObserver().addOnPreDrawListener(this);
+        }
+
+        @Override
+        public boolean onPreDraw() {
+            if (target.getWidth() <= 0 || target.getHeight() <= 0)
+                return true;
+            cancel();
+            load(source, target, target.getWidth(), target.getHeight());
+            return true;
+        }
+
+        @Override
+        public void cancel() {
+            ViewTreeObserver observer = target.getViewTreeObserver();
+            if (observer.isAlive())
+                observer.removeOnPreDrawListener(this);
+        }
+    }
+
+    private class Request implements Runnable, Cancellable {
+
+        private final ImageSource source;
+        private final String key;
+        private final ImageView target;
+        private final int width;
+        private final int height;
+        private volatile boolean cancelled = false;
+        Future<?> future;
+
+        Request(ImageSource source, String key, ImageView target, int width, int height) {
+            this.source = source;
+            this.key = key;
+            this.target = target;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            if (future != null)
+                future.cancel(false);
+        }
+
+        @Override
+        public void run() {
+            if (cancelled)
+                return;
+            Bitmap bitmap = diskCache != null ? diskCache.get(source.getKey(), width, height) :
+                    null;
+            boolean fromDisk = bitmap != null;
+            if (bitmap == null) {
+                try {
+                    bitmap = BitmapDecoder.decode(source, width, height);
+                } catch (IOException | OutOfMemoryError ex) {
+                    return;
+                }
+            }
+            if (bitmap == null)
+                return;
+            memoryCache.put(key, bitmap);
+            if (diskCache != null && !fromDisk)
+                diskCache.put(source.getKey(), width, height, bitmap);
+            if (cancelled)
+                return;
+            final Bitmap result = bitmap;
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    //Another image may have been loaded into the view meanwhile
+                    if (cancelled || target.getTag(R.id.image_loader_request) != Request.this)
+                        return;
+                    target.setTag(R.id.image_loader_request, null);
+                    target.setImageBitmap(result);
+                }
+            });
+        }
+    }
+}
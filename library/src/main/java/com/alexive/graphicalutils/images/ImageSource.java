@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.images;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Where an image is read from. Opened on the {@link ImageLoader}'s background threads, maybe
+ * more than once per load (the image's size is read before it's decoded).
+ */
+public abstract class ImageSource {
+
+    /**
+     * @return A key that identifies this image, used by the caches. Two sources with the same
+     * key must read the same image.
+     */
+    public abstract String getKey();
+
+    public abstract InputStream open() throws IOException;
+
+    /**
+     * The images are cached by the file's path: if the file changes, call
+     * {@link ImageLoader#evict(ImageSource)}.
+     */
+    public static ImageSource fromFile(final File file) {
+        return new ImageSource() {
+            @Override
+            public String getKey() {
+                return "file:" + file.getAbsolutePath();
+            }
+
+            @Override
+            public InputStream open() throws FileNotFoundException {
+                return new FileInputStream(file);
+            }
+        };
+    }
+
+    /**
+     * @param uri A content://, file:// or android.resource:// uri
+     */
+    public static ImageSource fromUri(Context context, final Uri uri) {
+        final ContentResolver resolver = context.getApplicationContext().getContentResolver();
+        return new ImageSource() {
+            @Override
+            public String getKey() {
+                return uri.toString();
+            }
+
+            @Override
+            public InputStream open() throws IOException {
+                InputStream stream = resolver.openInputStream(uri);
+                if (stream == null)
+                    throw new FileNotFoundException(uri.toString());
+                return stream;
+            }
+        };
+    }
+}
@@ -30,7 +30,7 @@ import com.alexive.graphicalutils.R;
 /**
  * Common RecyclerView.ViewHolder used by all Adapter classes in the lists package.
  */
-class AwesomeViewHolder extends RecyclerView.ViewHolder {
+class AwesomeViewHolder extends RecyclerView.ViewHolder implements ItemRow {
 
     public TextView text1;
     public TextView text2;
@@ -39,6 +39,11 @@ class AwesomeViewHolder extends RecyclerView.ViewHolder {
     public View divider;
     public ImageButton button;
     public CheckBox checkBox;
+    /**
+     * Adapter whose listeners are set on this holder's views. Differs from the adapter binding
+     * it when the holder comes from a {@link SharedViewPool}.
+     */
+    BaseAdapter owner;
 
     /**
      * Creates a new AwesomeViewHolder
@@ -54,6 +59,31 @@ class AwesomeViewHolder extends RecyclerView.ViewHolder {
         super(view);
     }
 
+    /**
+     * Creates a holder for a list item built in code, whose views are already known (see
+     * {@link ListItemViewFactory}).
+     */
+    AwesomeViewHolder(View view, TextView text1, TextView text2, ImageView left,
+                      ImageButton button, CheckBox checkBox, View divider) {
+        super(view);
+        this.text1 = text1;
+        this.text2 = text2;
+        this.left = left;
+        this.button = button;
+        this.checkBox = checkBox;
+        this.divider = divider;
+    }
+
+    /**
+     * Creates a holder for a list item view that has already been inflated (e.g. in the
+     * background by {@link BaseAdapter#warmUp(RecyclerView, int, ListItemType...)}).
+     */
+    static AwesomeViewHolder forInflatedView(View view) {
+        AwesomeViewHolder holder = new AwesomeViewHolder(view);
+        holder.construct();
+        return holder;
+    }
+
     private void construct() {
         this.text1 = (TextView) itemView.findViewById(android.R.id.text1);
         this.text2 = (TextView) itemView.findViewById(android.R.id.text2);
@@ -64,9 +94,15 @@ class AwesomeViewHolder extends RecyclerView.ViewHolder {
         this.checkBox = (CheckBox) itemView.findViewById(R.id.checkBox);
     }
 
+    @Override
+    public View getItemView() {
+        return itemView;
+    }
+
     //In order not to create another class and to let GridAdapter (#noHate!) use this Holder class,
     //I have established the following getters/setters.
 
+    @Override
     public TextView getText1() {
         return text1;
     }
@@ -75,6 +111,7 @@ class AwesomeViewHolder extends RecyclerView.ViewHolder {
         this.text1 = text1;
     }
 
+    @Override
     public TextView getText2() {
         return text2;
     }
@@ -87,10 +124,16 @@ class AwesomeViewHolder extends RecyclerView.ViewHolder {
         return left;
     }
 
+    @Override
+    public ImageView getImageView() {
+        return left;
+    }
+
     public void setImageView1(ImageView avatar) {
         this.left = avatar;
     }
 
+    @Override
     public ImageButton getButton() {
         return button;
     }
@@ -99,6 +142,7 @@ class AwesomeViewHolder extends RecyclerView.ViewHolder {
         this.button = button;
     }
 
+    @Override
     public View getDetailsView() {
         return divider;
     }
@@ -16,33 +16,76 @@
 
 package com.alexive.graphicalutils.lists;
 
+import android.content.Context;
 import android.graphics.Color;
+import android.support.v4.content.ContextCompat;
+import android.support.v4.view.AsyncLayoutInflater;
 import android.support.v7.widget.RecyclerView;
+import android.util.SparseArray;
+import android.util.TypedValue;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
+import android.widget.CompoundButton;
 import android.widget.ImageButton;
 import android.widget.ImageView;
-import android.widget.RelativeLayout;
 import android.widget.TextView;
 
 import com.alexive.graphicalutils.R;
+import com.alexive.graphicalutils.images.ImageLoader;
 import com.alexive.graphicalutils.view.ViewUtils;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
 /**
  * Base adapter class. Provides methods for divider customization, clicklistener setter
  * and subheader definition,
  */
 abstract class BaseAdapter extends RecyclerView.Adapter<AwesomeViewHolder> {
 
+    /**
+     * Marks a position of the view type cache that hasn't been computed yet.
+     */
+    private static final int UNKNOWN_VIEW_TYPE = Integer.MIN_VALUE;
+    /**
+     * RecyclerView.RecycledViewPool's default capacity per view type.
+     */
+    private static final int DEFAULT_POOL_CAPACITY = 5;
+
     OnItemClickListener onItemClickListener;
     private boolean extraPadding = false;
     private Divider.Style dividerStyle = Divider.Style.NONE;
     private int dividerColor;
+    /**
+     * Whether the dividers are drawn by a {@link DividerDecoration} instead of the items'
+     * divider views.
+     */
+    private boolean dividersAsDecoration = false;
     private boolean shift = false;
     private OnItemLongClickListener onItemLongClickListener;
     private View headerView;
     private View emptyView;
     private DataSetObserver observer;
+    private boolean cacheViewTypes = false;
+    /**
+     * View type of each item (headerView excluded), filled in lazily. It has room to spare, so
+     * insertions and removals shift it in place; only the first viewTypeCount entries are used.
+     */
+    private int[] viewTypes;
+    private int viewTypeCount;
+    /**
+     * Views inflated by {@link #warmUp(RecyclerView, int, ListItemType...)}, per view type,
+     * waiting to be wrapped in a holder.
+     */
+    private SparseArray<ArrayDeque<View>> preInflatedViews;
+    private boolean buildItemViewsInCode = false;
+    private SectionIndex sectionIndex;
+    /**
+     * The listener of every holder's views.
+     */
+    final ItemViewDispatcher dispatcher = new ItemViewDispatcher();
 
     public BaseAdapter() {
         if (shouldHaveStableIds())
@@ -59,6 +102,7 @@ abstract class BaseAdapter extends RecyclerView.Adapter<AwesomeViewHolder> {
             }
         };
         registerAdapterDataObserver(observer);
+        registerAdapterDataObserver(new ViewTypeCacheObserver());
     }
 
     protected boolean shouldHaveStableIds() {
@@ -111,7 +155,23 @@ abstract class BaseAdapter extends RecyclerView.Adapter<AwesomeViewHolder> {
     public abstract int getNumItems();
 
     /**
-     * Binds data to an item of the list.
+     * Binds data to an item of the list. Override either this or
+     * {@link #bindDataToListItem(int, View, ImageView, ImageButton, TextView...)}; this one is
+     * preferred, since it doesn't allocate an array of TextViews on every bind.
+     * The default implementation calls bindDataToListItem.
+     *
+     * @param index The index of the item in the list
+     * @param row   The item's views
+     */
+    public void bindDataToRow(int index, ItemRow row) {
+        bindDataToListItem(index, row.getItemView(), row.getImageView(), row.getButton(),
+                row.getText1(), row.getText2());
+    }
+
+    /**
+     * Binds data to an item of the list. Only called if
+     * {@link #bindDataToRow(int, ItemRow)} isn't overridden, so one of the two must be: the
+     * default implementation throws an IllegalStateException.
      *
      * @param index        The index of the item in the list
      * @param itemView     The item's View
@@ -119,8 +179,11 @@ abstract class BaseAdapter extends RecyclerView.Adapter<AwesomeViewHolder> {
      * @param button       The item's button, if exists (may be null)
      * @param texts        The item's textViews, from top to bottom, left to right
      */
-    public abstract void bindDataToListItem(int index, View itemView, ImageView iconOrAvatar,
-                                            ImageButton button, TextView... texts);
+    public void bindDataToListItem(int index, View itemView, ImageView iconOrAvatar,
+                                   ImageButton button, TextView... texts) {
+        throw new IllegalStateException(getClass().getName() + " must override " +
+                "bindDataToRow(int, ItemRow) or bindDataToListItem(...)");
+    }
 
     /**
      * The type of data that will be bound to the list item at a position index
@@ -148,20 +211,137 @@ abstract class BaseAdapter extends RecyclerView.Adapter<AwesomeViewHolder> {
     public AwesomeViewHolder onCreateViewHolder(ViewGroup viewGroup, int i) {
         if (i == AwesomeViewTypes.HEADER.code) {
             return new AwesomeViewHolder(headerView);
-        } else if (!AwesomeViewTypes.isSubHeader(i)) {
-            AwesomeViewHolder avh = new AwesomeViewHolder(i, viewGroup);
+        }
+        View preInflated = pollPreInflatedView(i);
+        AwesomeViewHolder avh;
+        if (preInflated != null)
+            avh = AwesomeViewHolder.forInflatedView(preInflated);
+        else if (buildItemViewsInCode)
+            avh = AwesomeViewTypes.isSubHeader(i) ?
+                    ListItemViewFactory.createSubHeader(viewGroup,
+                            i == AwesomeViewTypes.SUB_HEADER_SHIFTED.code,
+                            shouldSubHeaderTextColorBeAccent()) :
+                    ListItemViewFactory.createListItem(viewGroup,
+                            ListItemType.findTypeByResId(i), !dividersAsDecoration);
+        else
+            avh = new AwesomeViewHolder(getLayoutResIdForViewType(i), viewGroup);
+        avh.owner = this;
+        if (!AwesomeViewTypes.isSubHeader(i))
             setListenerForHolder(avh);
-            return avh;
-        } else
-            return new AwesomeViewHolder(shouldSubHeaderTextColorBeAccent() ?
-                    getSubheaderLayoutResId() : getSubHeaderNoAccentLayoutResId(),
-                    viewGroup);
+        return avh;
+    }
+
+    /**
+     * Called when a holder created by another adapter (through a {@link SharedViewPool}) is
+     * about to be bound by this one. Resets everything that was set when it was created:
+     * listeners, subheader text color and divider margins.
+     */
+    void adoptHolder(AwesomeViewHolder avh) {
+        avh.owner = this;
+        if (AwesomeViewTypes.isSubHeader(avh.getItemViewType())) {
+            resetSubHeaderTextColor(avh);
+            return;
+        }
+        setListenerForHolder(avh);
+        if (avh.divider != null && !dividersAsDecoration)
+            applyDividerMargins(avh);
+    }
+
+    private void resetSubHeaderTextColor(AwesomeViewHolder avh) {
+        Context context = avh.itemView.getContext();
+        TypedValue value = new TypedValue();
+        int attr = shouldSubHeaderTextColorBeAccent() ? R.attr.colorAccent :
+                android.R.attr.textColorPrimary;
+        if (!context.getTheme().resolveAttribute(attr, value, true))
+            return;
+        if (value.resourceId != 0)
+            avh.text1.setTextColor(ContextCompat.getColorStateList(context, value.resourceId));
+        else
+            avh.text1.setTextColor(value.data);
+    }
+
+    /**
+     * Makes the adapter build the list items (and subheaders) in code instead of inflating
+     * their layouts. The items look the same but are cheaper to create, since there's no XML
+     * parsing, reflection or view lookups by id. This only applies to the built-in layouts: if
+     * you override {@link #getSubheaderLayoutResId()}, leave this disabled.
+     * Disabled by default.
+     */
+    public void setBuildItemViewsInCode(boolean buildItemViewsInCode) {
+        this.buildItemViewsInCode = buildItemViewsInCode;
+    }
+
+    private int getLayoutResIdForViewType(int viewType) {
+        if (AwesomeViewTypes.isSubHeader(viewType))
+            return shouldSubHeaderTextColorBeAccent() ?
+                    getSubheaderLayoutResId() : getSubHeaderNoAccentLayoutResId();
+        return viewType;
+    }
+
+    private View pollPreInflatedView(int viewType) {
+        if (preInflatedViews == null)
+            return null;
+        ArrayDeque<View> views = preInflatedViews.get(viewType);
+        return views == null ? null : views.poll();
+    }
+
+    /**
+     * Inflates, on a background thread, holdersPerType item views for each of the given types
+     * (or builds them right away, see {@link #setBuildItemViewsInCode(boolean)})
+     * and puts their holders in the recyclerView's {@link RecyclerView.RecycledViewPool}, so the
+     * first scroll through the list doesn't have to inflate them on the main thread.
+     * Call it before the first layout, e.g. right before setting the adapter. The views can't
+     * be inflated without the RecyclerView's LayoutManager: if it isn't set yet, they're
+     * inflated once it is, the first time the list is drawn.
+     *
+     * @param recyclerView   The RecyclerView this adapter is (or will be) set to.
+     * @param holdersPerType How many holders to create for each type.
+     * @param types          The types of list items to pre-inflate. If none are given, all of
+     *                       them are, except {@link ListItemType#GRID_ITEM}.
+     */
+    public void warmUp(RecyclerView recyclerView, int holdersPerType, ListItemType... types) {
+        if (holdersPerType <= 0)
+            return;
+        if (recyclerView.getLayoutManager() == null) {
+            new LayoutManagerWaiter(recyclerView, holdersPerType, types).start();
+            return;
+        }
+        if (types.length == 0)
+            types = ListItemType.values();
+        int[] warmUpViewTypes = new int[types.length];
+        int count = 0;
+        for (ListItemType type : types) {
+            if (type == ListItemType.GRID_ITEM)
+                continue;
+            int viewType = type == ListItemType.SUB_HEADER ?
+                    (shift ? AwesomeViewTypes.SUB_HEADER_SHIFTED.code :
+                            AwesomeViewTypes.SUB_HEADER_NORMAL.code) :
+                    type.resId;
+            warmUpViewTypes[count++] = viewType;
+            //A shared pool's capacities are up to the app
+            if (holdersPerType > DEFAULT_POOL_CAPACITY &&
+                    !(recyclerView.getRecycledViewPool() instanceof SharedViewPool))
+                recyclerView.getRecycledViewPool().setMaxRecycledViews(viewType, holdersPerType);
+        }
+        if (count == 0)
+            return;
+        if (buildItemViewsInCode) {
+            //Cheap enough to be done right away
+            for (int t = 0; t < count; t++)
+                for (int h = 0; h < holdersPerType; h++)
+                    recyclerView.getRecycledViewPool().putRecycledView(
+                            createViewHolder(recyclerView, warmUpViewTypes[t]));
+            return;
+        }
+        if (preInflatedViews == null)
+            preInflatedViews = new SparseArray<>();
+        new PreInflater(recyclerView, Arrays.copyOf(warmUpViewTypes, count), holdersPerType)
+                .inflateNext();
     }
 
     public void setListenerForHolder(AwesomeViewHolder avh) {
-        ClickListener clickListener = getListenerForHolder(avh);
-        avh.setOnClickListener(clickListener);
-        avh.setOnLongClickListener(clickListener);
+        avh.setOnClickListener(dispatcher);
+        avh.setOnLongClickListener(dispatcher);
     }
 
     /**
@@ -184,6 +364,30 @@ abstract class BaseAdapter extends RecyclerView.Adapter<AwesomeViewHolder> {
         dividerColor = color;
     }
 
+    /**
+     * @return An ItemDecoration that draws the dividers (in the same style, color and padding)
+     * in a single pass over the list, instead of each item having a divider view that's
+     * colored, and laid out again, on every bind. Add it to the RecyclerView this adapter is
+     * set to; from then on the items' divider views are hidden, and the items built in code
+     * (see {@link #setBuildItemViewsInCode(boolean)}) don't have one at all.
+     */
+    public RecyclerView.ItemDecoration getDividerDecoration(Context context) {
+        dividersAsDecoration = true;
+        return new DividerDecoration(this, context);
+    }
+
+    Divider.Style getDividerStyle() {
+        return dividerStyle;
+    }
+
+    int getDividerColor() {
+        return dividerColor;
+    }
+
+    boolean dividersHaveExtraPadding() {
+        return extraPadding;
+    }
+
     @Override
     public void onBindViewHolder(AwesomeViewHolder awesomeViewHolder, int index) {
         int i = index;
@@ -191,13 +395,20 @@ abstract class BaseAdapter extends RecyclerView.Adapter<AwesomeViewHolder> {
             return;
         if (headerView != null)
             i--;
-        configExtraPadding(awesomeViewHolder, i);
-        if (awesomeViewHolder.divider != null)
+        if (awesomeViewHolder.owner != this)
+            adoptHolder(awesomeViewHolder);
+        if (dividersAsDecoration)
+            hideDividerView(awesomeViewHolder);
+        else
+            configExtraPadding(awesomeViewHolder, i);
+        if (awesomeViewHolder.divider != null && !dividersAsDecoration)
             if (drawDivider(index))
                 awesomeViewHolder.divider.setBackgroundColor(dividerColor);
             else
                 awesomeViewHolder.divider.setBackgroundColor(Color.TRANSPARENT);
-        if (AwesomeViewTypes.isSubHeader(getItemViewType(index))) {
+        if (isPlaceholder(i)) {
+            bindPlaceholder(i, awesomeViewHolder);
+        } else if (AwesomeViewTypes.isSubHeader(getItemViewType(index))) {
 //            if (headerView != null)
 //                i--;
             awesomeViewHolder.text1.setText(getSubHeaderText(i));
@@ -208,23 +419,73 @@ abstract class BaseAdapter extends RecyclerView.Adapter<AwesomeViewHolder> {
         }
     }
 
+    /**
+     * Cancels the {@link ImageLoader} load of the item's avatar (or grid image), if there's one,
+     * so it isn't decoded for an item that's gone.
+     */
+    @Override
+    public void onViewRecycled(AwesomeViewHolder holder) {
+        super.onViewRecycled(holder);
+        ImageLoader.cancel(holder.left);
+    }
+
     protected void preBindData(int i, AwesomeViewHolder awesomeViewHolder) {
-        bindDataToListItem(i,
-                awesomeViewHolder.itemView,
-                awesomeViewHolder.left,
-                awesomeViewHolder.button,
-                awesomeViewHolder.text1, awesomeViewHolder.text2);
+        bindDataToRow(i, awesomeViewHolder);
+    }
+
+    /**
+     * Whether the item at index hasn't been loaded yet (see {@link PagedList}), in which case
+     * it's bound by {@link #bindPlaceholder(int, ItemRow)} instead of
+     * {@link #bindDataToRow(int, ItemRow)}.
+     */
+    protected boolean isPlaceholder(int index) {
+        return false;
+    }
+
+    /**
+     * Like !{@link #isPlaceholder(int)}, but doesn't load anything.
+     */
+    boolean isLoaded(int index) {
+        return true;
+    }
+
+    /**
+     * Binds an item that hasn't been loaded yet. The default implementation clears its texts
+     * and image.
+     *
+     * @param index The index of the item in the list
+     * @param row   The item's views. Its type is the one {@link #getListItemDataType(int)}
+     *              returned for the placeholder
+     */
+    public void bindPlaceholder(int index, ItemRow row) {
+        if (row.getText1() != null)
+            row.getText1().setText(null);
+        if (row.getText2() != null)
+            row.getText2().setText(null);
+        if (row.getImageView() != null)
+            row.getImageView().setImageDrawable(null);
+    }
+
+    private void hideDividerView(AwesomeViewHolder avh) {
+        //A grid item's divider field is its details view
+        if (avh.divider != null && avh.divider.getId() == R.id.separator &&
+                avh.divider.getVisibility() != View.GONE)
+            avh.divider.setVisibility(View.GONE);
     }
 
     private void configExtraPadding(AwesomeViewHolder awesomeViewHolder, int i) {
         if (!drawDivider(i) || awesomeViewHolder.divider == null)
             return;
+        applyDividerMargins(awesomeViewHolder);
+    }
+
+    private void applyDividerMargins(AwesomeViewHolder awesomeViewHolder) {
         if (extraPadding) {
-            ((RelativeLayout.LayoutParams) awesomeViewHolder.divider.getLayoutParams())
+            ((ViewGroup.MarginLayoutParams) awesomeViewHolder.divider.getLayoutParams())
                     .setMargins(ViewUtils.convertDPtoPixels(awesomeViewHolder.divider.getContext(), 72)
                             , 0, 0, 0);
         } else {
-            ((RelativeLayout.LayoutParams) awesomeViewHolder.divider.getLayoutParams())
+            ((ViewGroup.MarginLayoutParams) awesomeViewHolder.divider.getLayoutParams())
                     .setMargins(0, 0, 0, 0);
         }
         awesomeViewHolder.divider.requestLayout();
@@ -236,6 +497,7 @@ abstract class BaseAdapter extends RecyclerView.Adapter<AwesomeViewHolder> {
 
     public void shiftShubheadersText(boolean shift) {
         this.shift = shift;
+        invalidateViewTypeCache();
     }
 
     public boolean hasHeaderView() {
@@ -271,6 +533,23 @@ abstract class BaseAdapter extends RecyclerView.Adapter<AwesomeViewHolder> {
 
     public void addHeaderView(View headerView) {
         this.headerView = headerView;
+        invalidateViewTypeCache();
+    }
+
+    /**
+     * Enables a cache of the items' view types, so {@link #getListItemDataType(int)} is called
+     * once per item (instead of once per bind, divider, span lookup, etc) until the item is
+     * notified as changed. The cache follows the notifyItemRange* calls, so you must notify
+     * the adapter of every change in the data.
+     * Disabled by default.
+     */
+    public void setViewTypeCacheEnabled(boolean enabled) {
+        cacheViewTypes = enabled;
+        invalidateViewTypeCache();
+    }
+
+    private void invalidateViewTypeCache() {
+        viewTypes = null;
     }
 
     @Override
@@ -281,6 +560,36 @@ abstract class BaseAdapter extends RecyclerView.Adapter<AwesomeViewHolder> {
             else
                 position--;
         }
+        if (!cacheViewTypes)
+            return computeViewType(position);
+        int count = getNumItems();
+        if (viewTypes == null || viewTypeCount != count) {
+            //Data changed without the adapter being notified, start over
+            if (viewTypes == null || viewTypes.length < count)
+                viewTypes = new int[count];
+            Arrays.fill(viewTypes, 0, count, UNKNOWN_VIEW_TYPE);
+            viewTypeCount = count;
+        }
+        int viewType = viewTypes[position];
+        if (viewType == UNKNOWN_VIEW_TYPE)
+            viewType = viewTypes[position] = computeViewType(position);
+        return viewType;
+    }
+
+    /**
+     * Same as {@link #getListItemDataType(int)} but goes through the view type cache, if it's
+     * enabled.
+     */
+    ListItemType getCachedListItemType(int index) {
+        if (!cacheViewTypes)
+            return getListItemDataType(index);
+        int viewType = getItemViewType(getRealAdapterPosition(index));
+        if (AwesomeViewTypes.isSubHeader(viewType))
+            return ListItemType.SUB_HEADER;
+        return ListItemType.findTypeByResId(viewType);
+    }
+
+    private int computeViewType(int position) {
 //        if (isSubHeader(position))
 //            return AwesomeViewTypes.SUB_HEADER.code;
 //        else
@@ -294,6 +603,23 @@ abstract class BaseAdapter extends RecyclerView.Adapter<AwesomeViewHolder> {
 
     }
 
+    /**
+     * @return The index of this list's sections (subheaders).
+     */
+    public SectionIndex getSectionIndex() {
+        if (sectionIndex == null)
+            sectionIndex = new SectionIndex(this);
+        return sectionIndex;
+    }
+
+    /**
+     * @return An ItemDecoration that keeps the subheader of the section at the top of the list
+     * pinned while it's scrolled. Add it to the RecyclerView this adapter is set to.
+     */
+    public RecyclerView.ItemDecoration getStickySubheaderDecoration() {
+        return new StickySubheaderDecoration(this);
+    }
+
     public void setOnItemClickListener(OnItemClickListener listener) {
         onItemClickListener = listener;
     }
@@ -314,8 +640,19 @@ abstract class BaseAdapter extends RecyclerView.Adapter<AwesomeViewHolder> {
                         getAdapterPositionForViewHolder(avh));
     }
 
-    protected ClickListener getListenerForHolder(AwesomeViewHolder avh) {
-        return new ClickListener(avh);
+    /**
+     * Called by the {@link ItemViewDispatcher} when a view of a holder is clicked. By default
+     * only the item view itself is handled, see {@link #handleClick(AwesomeViewHolder)}.
+     */
+    void dispatchClick(View view, AwesomeViewHolder avh) {
+        if (view == avh.itemView)
+            handleClick(avh);
+    }
+
+    /**
+     * Called by the {@link ItemViewDispatcher} when a holder's checkbox is checked or unchecked.
+     */
+    void dispatchCheckedChange(AwesomeViewHolder avh, boolean isChecked) {
     }
 
     public static abstract class DataSetObserver extends RecyclerView.AdapterDataObserver {
@@ -342,23 +679,236 @@ abstract class BaseAdapter extends RecyclerView.Adapter<AwesomeViewHolder> {
 
     }
 
-    private class ClickListener implements View.OnClickListener, View.OnLongClickListener {
+    /**
+     * Waits for a RecyclerView to have a LayoutManager (e.g. set in onViewCreated, after the
+     * adapter) to warm it up.
+     */
+    private class LayoutManagerWaiter implements ViewTreeObserver.OnPreDrawListener {
+
+        private final RecyclerView recyclerView;
+        private final int holdersPerType;
+        private final ListItemType[] types;
 
-        private AwesomeViewHolder avh;
+        LayoutManagerWaiter(RecyclerView recyclerView, int holdersPerType,
+                            ListItemType[] types) {
+            this.recyclerView = recyclerView;
+            this.holdersPerType = holdersPerType;
+            this.types = types;
+        }
 
-        public ClickListener(AwesomeViewHolder avh) {
-            this.avh = avh;
+        void start() {
+            recyclerView.getViewTreeObserver().addOnPreDrawListener(this);
         }
 
         @Override
-        public void onClick(View v) {
-            handleClick(avh);
+        public boolean onPreDraw() {
+            if (recyclerView.getLayoutManager() == null)
+                return true;
+            ViewTreeObserver observer = recyclerView.getViewTreeObserver();
+            if (observer.isAlive())
+                observer.removeOnPreDrawListener(this);
+            RecyclerView.Adapter adapter = recyclerView.getAdapter();
+            if (adapter == null || adapter == BaseAdapter.this)
+                warmUp(recyclerView, holdersPerType, types);
+            return true;
+        }
+    }
+
+    /**
+     * Inflates the warm up views one at a time (AsyncLayoutInflater's queue blocks the caller
+     * once it's full), creating their holders as soon as each one is ready.
+     */
+    private class PreInflater implements AsyncLayoutInflater.OnInflateFinishedListener {
+
+        private final RecyclerView recyclerView;
+        private final AsyncLayoutInflater inflater;
+        private final int[] viewTypes;
+        private final int holdersPerType;
+        private int typeIndex = 0;
+        private int inflatedOfType = 0;
+
+        PreInflater(RecyclerView recyclerView, int[] viewTypes, int holdersPerType) {
+            this.recyclerView = recyclerView;
+            this.inflater = new AsyncLayoutInflater(recyclerView.getContext());
+            this.viewTypes = viewTypes;
+            this.holdersPerType = holdersPerType;
+        }
+
+        void inflateNext() {
+            if (typeIndex < viewTypes.length)
+                inflater.inflate(getLayoutResIdForViewType(viewTypes[typeIndex]),
+                        recyclerView, this);
+        }
+
+        @Override
+        public void onInflateFinished(View view, int resid, ViewGroup parent) {
+            RecyclerView.Adapter adapter = recyclerView.getAdapter();
+            if (adapter != null && adapter != BaseAdapter.this)
+                return; //The adapter was replaced, these views are no longer needed
+            int viewType = viewTypes[typeIndex];
+            ArrayDeque<View> views = preInflatedViews.get(viewType);
+            if (views == null) {
+                views = new ArrayDeque<>(holdersPerType);
+                preInflatedViews.put(viewType, views);
+            }
+            views.add(view);
+            //onCreateViewHolder picks up the view that was just inflated
+            recyclerView.getRecycledViewPool()
+                    .putRecycledView(createViewHolder(recyclerView, viewType));
+            if (++inflatedOfType == holdersPerType) {
+                inflatedOfType = 0;
+                typeIndex++;
+            }
+            inflateNext();
+        }
+    }
+
+    /**
+     * Keeps the view type cache in sync with the data, shifting it on insertions/removals and
+     * forgetting the entries of changed items.
+     */
+    private class ViewTypeCacheObserver extends RecyclerView.AdapterDataObserver {
+
+        @Override
+        public void onChanged() {
+            invalidateViewTypeCache();
+        }
 
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+            //Showing/checking the checkboxes doesn't change the view types
+            if (!Payloads.isCheckBoxPayload(payload))
+                onItemRangeChanged(positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            if (viewTypes == null)
+                return;
+            int start = Math.max(positionStart - getRealAdapterPosition(0), 0);
+            int end = Math.min(positionStart - getRealAdapterPosition(0) + itemCount,
+                    viewTypeCount);
+            if (start < end)
+                Arrays.fill(viewTypes, start, end, UNKNOWN_VIEW_TYPE);
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            if (viewTypes == null)
+                return;
+            int start = positionStart - getRealAdapterPosition(0);
+            if (start < 0 || start > viewTypeCount) {
+                invalidateViewTypeCache();
+                return;
+            }
+            int newCount = viewTypeCount + itemCount;
+            if (newCount > viewTypes.length)
+                viewTypes = Arrays.copyOf(viewTypes, Math.max(newCount, viewTypes.length * 2));
+            System.arraycopy(viewTypes, start, viewTypes, start + itemCount,
+                    viewTypeCount - start);
+            Arrays.fill(viewTypes, start, start + itemCount, UNKNOWN_VIEW_TYPE);
+            viewTypeCount = newCount;
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            if (viewTypes == null)
+                return;
+            int start = positionStart - getRealAdapterPosition(0);
+            if (start < 0 || start + itemCount > viewTypeCount) {
+                invalidateViewTypeCache();
+                return;
+            }
+            System.arraycopy(viewTypes, start + itemCount, viewTypes, start,
+                    viewTypeCount - start - itemCount);
+            viewTypeCount -= itemCount;
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            if (viewTypes == null)
+                return;
+            int from = fromPosition - getRealAdapterPosition(0);
+            int to = toPosition - getRealAdapterPosition(0);
+            if (from < 0 || to < 0 || from + itemCount > viewTypeCount ||
+                    to + itemCount > viewTypeCount) {
+                invalidateViewTypeCache();
+                return;
+            }
+            //Moving the block is rotating the part of the array between its old and new places
+            if (from < to)
+                rotateLeft(viewTypes, from, to + itemCount, itemCount);
+            else if (from > to)
+                rotateLeft(viewTypes, to, from + itemCount, from - to);
+        }
+    }
+
+    /**
+     * Rotates array[from, to) by distance to the left, in place.
+     */
+    private static void rotateLeft(int[] array, int from, int to, int distance) {
+        reverse(array, from, from + distance);
+        reverse(array, from + distance, to);
+        reverse(array, from, to);
+    }
+
+    private static void reverse(int[] array, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            int swap = array[i];
+            array[i] = array[j];
+            array[j] = swap;
+        }
+    }
+
+    /**
+     * Listens to the views of all the holders (item views, avatars, buttons and checkboxes) and
+     * finds the holder a view belongs to when it's clicked, so creating a holder doesn't
+     * allocate a listener for each of its views.
+     */
+    final class ItemViewDispatcher implements View.OnClickListener, View.OnLongClickListener,
+            CompoundButton.OnCheckedChangeListener {
+
+        @Override
+        public void onClick(View v) {
+            AwesomeViewHolder avh = findHolder(v);
+            if (avh != null)
+                dispatchClick(v, avh);
         }
 
         @Override
         public boolean onLongClick(View v) {
-            return handleLongClick(avh);
+            AwesomeViewHolder avh = findHolder(v);
+            return avh != null && v == avh.itemView && handleLongClick(avh);
+        }
+
+        @Override
+        public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+            AwesomeViewHolder avh = findHolder(buttonView);
+            if (avh != null)
+                dispatchCheckedChange(avh, isChecked);
+        }
+
+        /**
+         * Same as RecyclerView#findContainingViewHolder, without knowing the RecyclerView
+         * beforehand.
+         *
+         * @return The holder view is in, or null if it isn't in a list (or its item is being
+         * removed).
+         */
+        private AwesomeViewHolder findHolder(View view) {
+            View child = view;
+            ViewParent parent = view.getParent();
+            while (parent instanceof View && !(parent instanceof RecyclerView)) {
+                child = (View) parent;
+                parent = parent.getParent();
+            }
+            if (!(parent instanceof RecyclerView))
+                return null;
+            RecyclerView.ViewHolder holder = ((RecyclerView) parent).getChildViewHolder(child);
+            if (!(holder instanceof AwesomeViewHolder) ||
+                    holder.getAdapterPosition() == RecyclerView.NO_POSITION)
+                return null;
+            return (AwesomeViewHolder) holder;
         }
     }
 }
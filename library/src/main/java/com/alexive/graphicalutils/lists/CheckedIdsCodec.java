@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import java.util.Arrays;
+
+/**
+ * Encodes a set of ids in few bytes, so the checked items can be saved in a Bundle: the ids are
+ * sorted and split in runs of consecutive ids, and each run is written as its distance from the
+ * previous one and its length, in varints. Position-like ids (the default
+ * {@link ListAdapter#getIdForItem(int)}) take a few bytes per run, no matter how many ids are in
+ * it; scattered ids take as many bytes as the gaps between them need.
+ * <p>
+ * Format: the number of ids, then for each run a header and, if the run has more than one id,
+ * its length - 2 (for the first run, length - 1). The header of the first run is its first id,
+ * zigzag encoded; for the others it's ((gap - 2) << 1) | (length > 1), gap being the distance
+ * from the last id of the run before, which is at least 2. Distances wrap around at 2^64: the
+ * ids are written starting after the largest gap between two of them, so no other gap can be
+ * over 2^63, and every header fits in 64 bits.
+ */
+final class CheckedIdsCodec {
+
+    private CheckedIdsCodec() {
+    }
+
+    static byte[] encode(LongRangeSet ids) {
+        int ranges = ids.getRangeCount();
+        int first = rangeAfterLargestGap(ids);
+        byte[] out = new byte[Math.max(16, ranges * 4)];
+        int pos = 0;
+        out = ensure(out, pos, 10);
+        pos = writeVarint(out, pos, ids.size());
+
+        long previousEnd = 0;
+        boolean firstRun = true;
+        int i = 0;
+        while (i < ranges) {
+            long start = ids.getStart((first + i) % ranges);
+            long end = ids.getEnd((first + i) % ranges);
+            i++;
+            //Only a range that ends at Long.MAX_VALUE can be followed by a consecutive one: the
+            //one that starts at Long.MIN_VALUE, if the ids wrap around
+            if (i < ranges && end == Long.MAX_VALUE &&
+                    ids.getStart((first + i) % ranges) == Long.MIN_VALUE)
+                end = ids.getEnd((first + i++) % ranges);
+            long length = end - start + 1;
+            out = ensure(out, pos, 20);
+            long header;
+            if (firstRun)
+                header = (start << 1) ^ (start >> 63);
+            else
+                header = ((start - previousEnd - 2) << 1) | (length > 1 ? 1 : 0);
+            pos = writeVarint(out, pos, header);
+            if (firstRun || length > 1)
+                pos = writeVarint(out, pos, length - (firstRun ? 1 : 2));
+            previousEnd = end;
+            firstRun = false;
+        }
+        return Arrays.copyOf(out, pos);
+    }
+
+    /**
+     * @return The index of the range after the largest gap between two ranges (wrapping around
+     * at 2^64, which is the gap between the last and the first).
+     */
+    private static int rangeAfterLargestGap(LongRangeSet ids) {
+        int ranges = ids.getRangeCount();
+        if (ranges < 2)
+            return 0;
+        int first = 0;
+        long largest = ids.getStart(0) - ids.getEnd(ranges - 1);
+        for (int i = 1; i < ranges; i++) {
+            long gap = ids.getStart(i) - ids.getEnd(i - 1);
+            //Unsigned comparison
+            if ((gap ^ Long.MIN_VALUE) > (largest ^ Long.MIN_VALUE)) {
+                largest = gap;
+                first = i;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * @return The ids. O(number of runs of consecutive ids).
+     * @throws IllegalArgumentException If data wasn't written by {@link #encode(LongRangeSet)}.
+     */
+    static LongRangeSet decode(byte[] data) {
+        int[] pos = {0};
+        long count = readVarint(data, pos);
+        if (count < 0 || count > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid checked ids");
+        //The runs are sorted but start after the largest gap, so the ones from where the ids
+        //wrap around are added to the set first
+        long[] starts = new long[8];
+        long[] ends = new long[8];
+        int runs = 0;
+        int wrap = 0;
+        long read = 0;
+        long next = 0;
+        while (read < count) {
+            long header = readVarint(data, pos);
+            long length;
+            if (runs == 0) {
+                next = (header >>> 1) ^ -(header & 1);
+                length = readVarint(data, pos) + 1;
+            } else {
+                next += (header >>> 1) + 2;
+                length = (header & 1) != 0 ? readVarint(data, pos) + 2 : 1;
+            }
+            if (length <= 0 || length > count - read)
+                throw new IllegalArgumentException("Invalid checked ids");
+            long end = next + length - 1;
+            if (runs + 2 > starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+                ends = Arrays.copyOf(ends, ends.length * 2);
+            }
+            if (runs > 0 && next < ends[runs - 1])
+                wrap = runs;
+            if (end < next) {
+                //Wraps around itself
+                starts[runs] = next;
+                ends[runs++] = Long.MAX_VALUE;
+                wrap = runs;
+                starts[runs] = Long.MIN_VALUE;
+                ends[runs++] = end;
+            } else {
+                starts[runs] = next;
+                ends[runs++] = end;
+            }
+            read += length;
+            //The next gap is counted from the last id of this run
+            next = end;
+        }
+        LongRangeSet ids = new LongRangeSet();
+        for (int i = 0; i < runs; i++) {
+            int run = (wrap + i) % runs;
+            ids.addLast(starts[run], ends[run]);
+        }
+        return ids;
+    }
+
+    private static byte[] ensure(byte[] out, int pos, int needed) {
+        return pos + needed <= out.length ? out : Arrays.copyOf(out, (pos + needed) * 2);
+    }
+
+    private static int writeVarint(byte[] out, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static long readVarint(byte[] data, int[] pos) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos[0] >= data.length)
+                throw new IllegalArgumentException("Invalid checked ids");
+            byte b = data[pos[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IllegalArgumentException("Invalid checked ids");
+    }
+}
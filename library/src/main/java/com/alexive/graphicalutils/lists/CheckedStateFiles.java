@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import android.content.Context;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The files the checked ids too large for a Bundle are saved to, see
+ * {@link ListAdapter#saveCheckedState(Context, android.os.Bundle, String)}. Each adapter has
+ * one file, overwritten on every save and deleted once it's restored.
+ * <p>
+ * Files are written on a background thread, so saving doesn't block the main thread. Until a
+ * write is done its data is kept in memory, so reading the file right after (e.g. after a
+ * configuration change) gets it.
+ */
+final class CheckedStateFiles {
+
+    private static final String DIRECTORY = "graphicalutils-checked";
+    /**
+     * Files older than this were never restored (e.g. the user left the app), so they're
+     * deleted.
+     */
+    private static final long MAX_AGE_MILLIS = 7 * 24 * 60 * 60 * 1000L;
+
+    /**
+     * The data of the writes that aren't done yet, by path.
+     */
+    private static final Map<String, byte[]> PENDING = new HashMap<>();
+    private static ExecutorService executor;
+
+    private CheckedStateFiles() {
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null)
+            executor = Executors.newSingleThreadExecutor();
+        return executor;
+    }
+
+    /**
+     * @return A new file name, for an adapter that hasn't got one yet.
+     */
+    static File newFile(Context context) {
+        return new File(new File(context.getCacheDir(), DIRECTORY),
+                System.currentTimeMillis() + "-" + System.nanoTime());
+    }
+
+    /**
+     * Writes data to file (replacing it), in the background.
+     */
+    static void write(final File file, final byte[] data) {
+        final String path = file.getPath();
+        synchronized (PENDING) {
+            PENDING.put(path, data);
+        }
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                File directory = file.getParentFile();
+                if (directory.isDirectory() || directory.mkdirs()) {
+                    deleteOldFiles(directory);
+                    writeNow(file, data);
+                }
+                synchronized (PENDING) {
+                    //Unless it was written again meanwhile
+                    if (PENDING.get(path) == data)
+                        PENDING.remove(path);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return The data last written to file, or null if it's gone (e.g. the cache was cleared).
+     */
+    static byte[] read(File file) {
+        synchronized (PENDING) {
+            byte[] data = PENDING.get(file.getPath());
+            if (data != null)
+                return data;
+        }
+        try {
+            DataInputStream stream = new DataInputStream(new FileInputStream(file));
+            try {
+                byte[] data = new byte[(int) file.length()];
+                stream.readFully(data);
+                return data;
+            } finally {
+                stream.close();
+            }
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Deletes file, after the writes to it that aren't done yet.
+     */
+    static void delete(final File file) {
+        synchronized (PENDING) {
+            PENDING.remove(file.getPath());
+        }
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                file.delete();
+            }
+        });
+    }
+
+    private static void writeNow(File file, byte[] data) {
+        //Written aside and renamed, so a process killed halfway doesn't leave half a file
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            OutputStream stream = new FileOutputStream(temp);
+            try {
+                stream.write(data);
+            } finally {
+                stream.close();
+            }
+            if (!temp.renameTo(file))
+                temp.delete();
+        } catch (IOException ex) {
+            temp.delete();
+        }
+    }
+
+    private static void deleteOldFiles(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+        long now = System.currentTimeMillis();
+        for (File old : files)
+            if (now - old.lastModified() > MAX_AGE_MILLIS)
+                old.delete();
+    }
+}
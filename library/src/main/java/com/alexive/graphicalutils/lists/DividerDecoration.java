@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.support.v4.view.ViewCompat;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+import com.alexive.graphicalutils.view.ViewUtils;
+
+/**
+ * Draws the list items' dividers, in the adapter's {@link Divider.Style} and color, instead of
+ * the divider view in each item: a 1dp line at the bottom of the item, starting 72dp in if
+ * {@link BaseAdapter#setDividersHaveExtraPadding(boolean)} is set.
+ * Whether an item has one is still up to {@link BaseAdapter#drawDivider(int)}, so the
+ * {@link Divider.Style#JUST_SUB_HEADERS} look ahead (and any override) works the same.
+ * See {@link BaseAdapter#getDividerDecoration(Context)}.
+ */
+final class DividerDecoration extends RecyclerView.ItemDecoration {
+
+    private final BaseAdapter adapter;
+    private final Paint paint = new Paint();
+    private final int height;
+    private final int extraPadding;
+
+    DividerDecoration(BaseAdapter adapter, Context context) {
+        this.adapter = adapter;
+        height = ViewUtils.convertDPtoPixels(context, 1);
+        extraPadding = ViewUtils.convertDPtoPixels(context, 72);
+    }
+
+    @Override
+    public void onDraw(Canvas c, RecyclerView parent, RecyclerView.State state) {
+        int color = adapter.getDividerColor();
+        if (adapter.getDividerStyle() == Divider.Style.NONE || Color.alpha(color) == 0)
+            return;
+        int inset = adapter.dividersHaveExtraPadding() ? extraPadding : 0;
+        for (int i = 0; i < parent.getChildCount(); i++) {
+            View child = parent.getChildAt(i);
+            int position = parent.getChildAdapterPosition(child);
+            if (position == RecyclerView.NO_POSITION || !hasDivider(position) ||
+                    !adapter.drawDivider(position))
+                continue;
+            //Fades and moves along with the item while it's animated
+            paint.setColor(color);
+            paint.setAlpha(Math.round(Color.alpha(color) * ViewCompat.getAlpha(child)));
+            int bottom = child.getBottom() + Math.round(ViewCompat.getTranslationY(child));
+            c.drawRect(child.getLeft() + inset, bottom - height, child.getRight(), bottom, paint);
+        }
+    }
+
+    /**
+     * @return Whether the item at position would have a divider view: only the list items do,
+     * not the header view, subheaders or grid items.
+     */
+    private boolean hasDivider(int position) {
+        int viewType = adapter.getItemViewType(position);
+        return viewType != AwesomeViewTypes.HEADER.code &&
+                viewType != ListItemType.GRID_ITEM.resId &&
+                !AwesomeViewTypes.isSubHeader(viewType);
+    }
+}
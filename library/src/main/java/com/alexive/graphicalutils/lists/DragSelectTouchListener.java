@@ -0,0 +1,227 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import android.support.v4.view.ViewCompat;
+import android.support.v7.widget.RecyclerView;
+import android.view.MotionEvent;
+import android.view.View;
+
+import com.alexive.graphicalutils.view.ViewUtils;
+
+/**
+ * Checks the items the finger is dragged over, after {@link #start(int)} (the adapter calls it
+ * when an item is long pressed with the checkboxes shown): the items between the one the drag
+ * started from (the anchor) and the one under the finger get the anchor's checked state, the
+ * ones the finger moves back from get back the state they had before the drag. While the
+ * finger is near the top or bottom edge of the list, it scrolls by itself, faster the closer
+ * the finger is.
+ * <p>
+ * Only the items that enter or leave the range are changed, with
+ * {@link ListAdapter#checkRange(int, int, boolean)}, so the action mode and the
+ * {@link ListAdapter.SelectionChangeListener} are told once per frame.
+ * See {@link ListAdapter#setDragSelectionEnabled(boolean)}.
+ */
+final class DragSelectTouchListener implements RecyclerView.OnItemTouchListener {
+
+    /**
+     * Height of the areas at the top and bottom of the list that scroll it.
+     */
+    private static final int HOTSPOT_DP = 56;
+    /**
+     * How far the list scrolls per frame, with the finger at the very edge.
+     */
+    private static final int MAX_SCROLL_DP = 16;
+
+    private final ListAdapter adapter;
+    private RecyclerView recyclerView;
+    private int hotspotHeight;
+    private int maxScrollSpeed;
+
+    private boolean active = false;
+    private boolean check;
+    private int anchor;
+    /**
+     * The other end of the range that's applied, the anchor included.
+     */
+    private int end;
+    /**
+     * The checked items when the drag started.
+     */
+    private Selection before;
+    private float lastX;
+    private float lastY;
+    private int scrollSpeed = 0;
+
+    private final Runnable autoScroll = new Runnable() {
+        @Override
+        public void run() {
+            if (!active || scrollSpeed == 0 || recyclerView == null)
+                return;
+            recyclerView.scrollBy(0, scrollSpeed);
+            //Other items are under the finger now
+            selectUnder(lastX, lastY);
+            ViewCompat.postOnAnimation(recyclerView, this);
+        }
+    };
+
+    DragSelectTouchListener(ListAdapter adapter) {
+        this.adapter = adapter;
+    }
+
+    void attachToRecyclerView(RecyclerView recyclerView) {
+        if (this.recyclerView == recyclerView)
+            return;
+        if (this.recyclerView != null) {
+            stop();
+            this.recyclerView.removeOnItemTouchListener(this);
+        }
+        this.recyclerView = recyclerView;
+        if (recyclerView == null)
+            return;
+        hotspotHeight = ViewUtils.convertDPtoPixels(recyclerView.getContext(), HOTSPOT_DP);
+        maxScrollSpeed = ViewUtils.convertDPtoPixels(recyclerView.getContext(), MAX_SCROLL_DP);
+        recyclerView.addOnItemTouchListener(this);
+    }
+
+    /**
+     * Starts a drag from the item at index, with its current checked state.
+     */
+    void start(int index) {
+        if (recyclerView == null || !adapter.isCheckable(index))
+            return;
+        active = true;
+        check = adapter.isChecked(index);
+        before = adapter.getSelection();
+        anchor = index;
+        end = index;
+        scrollSpeed = 0;
+        recyclerView.getParent().requestDisallowInterceptTouchEvent(true);
+    }
+
+    private void stop() {
+        active = false;
+        before = null;
+        scrollSpeed = 0;
+        if (recyclerView != null)
+            recyclerView.removeCallbacks(autoScroll);
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(RecyclerView rv, MotionEvent e) {
+        if (!active)
+            return false;
+        //The event that's intercepted isn't passed to onTouchEvent
+        onTouchEvent(rv, e);
+        return active;
+    }
+
+    @Override
+    public void onTouchEvent(RecyclerView rv, MotionEvent e) {
+        if (!active)
+            return;
+        switch (e.getActionMasked()) {
+            case MotionEvent.ACTION_MOVE:
+                lastX = e.getX();
+                lastY = e.getY();
+                updateScrollSpeed(rv);
+                selectUnder(lastX, lastY);
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                stop();
+                break;
+        }
+    }
+
+    @Override
+    public void onRequestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+    }
+
+    private void updateScrollSpeed(RecyclerView rv) {
+        int speed = 0;
+        if (lastY < hotspotHeight)
+            speed = -Math.max(1, (int) (maxScrollSpeed * (hotspotHeight - lastY) / hotspotHeight));
+        else if (lastY > rv.getHeight() - hotspotHeight)
+            speed = Math.max(1, (int) (maxScrollSpeed *
+                    (lastY - rv.getHeight() + hotspotHeight) / hotspotHeight));
+        boolean wasScrolling = scrollSpeed != 0;
+        scrollSpeed = Math.max(-maxScrollSpeed, Math.min(speed, maxScrollSpeed));
+        if (scrollSpeed != 0 && !wasScrolling) {
+            //A run posted before the finger left the edge may still be pending
+            rv.removeCallbacks(autoScroll);
+            ViewCompat.postOnAnimation(rv, autoScroll);
+        }
+    }
+
+    private void selectUnder(float x, float y) {
+        //The finger may be over the padding or past the list's edges
+        x = Math.max(0, Math.min(x, recyclerView.getWidth() - 1));
+        y = Math.max(0, Math.min(y, recyclerView.getHeight() - 1));
+        View child = recyclerView.findChildViewUnder(x, y);
+        if (child == null)
+            return;
+        int position = recyclerView.getChildAdapterPosition(child);
+        if (position == RecyclerView.NO_POSITION)
+            return;
+        int index = Math.max(position - adapter.getRealAdapterPosition(0), 0);
+        if (index == end || index >= adapter.getNumItems())
+            return;
+        moveEnd(index);
+    }
+
+    /**
+     * Moves the end of the range, changing only the items that enter or leave it.
+     */
+    private void moveEnd(int newEnd) {
+        int oldLow = Math.min(anchor, end);
+        int oldHigh = Math.max(anchor, end);
+        int newLow = Math.min(anchor, newEnd);
+        int newHigh = Math.max(anchor, newEnd);
+        end = newEnd;
+        //Left the range
+        restore(oldLow, newLow - 1);
+        restore(newHigh + 1, oldHigh);
+        //Entered it
+        apply(newLow, oldLow - 1, check);
+        apply(oldHigh + 1, newHigh, check);
+    }
+
+    /**
+     * Gives the items from from to to (both included) back the state they had before the drag,
+     * a range of items with the same state at a time.
+     */
+    private void restore(int from, int to) {
+        while (from <= to) {
+            boolean state = wasChecked(from);
+            int runEnd = from;
+            while (runEnd < to && wasChecked(runEnd + 1) == state)
+                runEnd++;
+            apply(from, runEnd, state);
+            from = runEnd + 1;
+        }
+    }
+
+    private boolean wasChecked(int index) {
+        return before.contains(adapter.getIdForItem(index));
+    }
+
+    private void apply(int from, int to, boolean state) {
+        if (from <= to)
+            adapter.checkCheckableRange(from, to - from + 1, state);
+    }
+}
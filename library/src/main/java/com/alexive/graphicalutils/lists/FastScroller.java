@@ -0,0 +1,264 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.os.SystemClock;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.MotionEvent;
+
+import com.alexive.graphicalutils.R;
+import com.alexive.graphicalutils.view.ViewUtils;
+
+/**
+ * A fast scroll thumb for a RecyclerView, drawn on its right edge while the list scrolls. When
+ * the adapter is one of this library's, dragging it shows a bubble with the section's subheader
+ * text ({@link BaseAdapter#getSubHeaderText(int)}), found through the adapter's
+ * {@link SectionIndex}.
+ * Dragging jumps straight to the target position (with scrollToPositionWithOffset), the items
+ * in between aren't laid out or bound.
+ * <p>
+ * Usage: {@code new FastScroller(context).attachToRecyclerView(recyclerView);}
+ */
+public class FastScroller extends RecyclerView.ItemDecoration
+        implements RecyclerView.OnItemTouchListener {
+
+    /**
+     * How long the thumb stays visible after the list stops scrolling.
+     */
+    private static final long HIDE_DELAY_MILLIS = 1500;
+    /**
+     * The thumb is only shown if the content is at least this many times taller than the list.
+     */
+    private static final int MIN_PAGES = 4;
+
+    private final Paint thumbPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint bubblePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF rect = new RectF();
+    private final int thumbWidth;
+    private final int thumbHeight;
+    private final int touchWidth;
+    private final int margin;
+    private final int bubbleSize;
+
+    private RecyclerView recyclerView;
+    private boolean dragging = false;
+    private float dragFraction;
+    private long lastScrollTime;
+    /**
+     * The subheader whose text is in label, so it's only looked up when the section changes.
+     */
+    private int labelSectionStart = -1;
+    private String label;
+
+    private final RecyclerView.OnScrollListener scrollListener =
+            new RecyclerView.OnScrollListener() {
+                @Override
+                public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                    if (dy == 0)
+                        return;
+                    lastScrollTime = SystemClock.uptimeMillis();
+                    recyclerView.removeCallbacks(hideRunnable);
+                    recyclerView.postDelayed(hideRunnable, HIDE_DELAY_MILLIS);
+                }
+            };
+
+    private final Runnable hideRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (recyclerView != null)
+                recyclerView.invalidate();
+        }
+    };
+
+    public FastScroller(Context context) {
+        thumbWidth = ViewUtils.convertDPtoPixels(context, 6);
+        thumbHeight = ViewUtils.convertDPtoPixels(context, 48);
+        touchWidth = ViewUtils.convertDPtoPixels(context, 32);
+        margin = ViewUtils.convertDPtoPixels(context, 4);
+        bubbleSize = ViewUtils.convertDPtoPixels(context, 64);
+
+        TypedArray a = context.obtainStyledAttributes(new int[]{R.attr.colorAccent});
+        int accent = a.getColor(0, Color.DKGRAY);
+        a.recycle();
+        thumbPaint.setColor(accent);
+        bubblePaint.setColor(accent);
+        textPaint.setColor(Color.WHITE);
+        textPaint.setTextAlign(Paint.Align.CENTER);
+        textPaint.setTextSize(ViewUtils.convertDPtoPixels(context, 28));
+    }
+
+    public void attachToRecyclerView(RecyclerView recyclerView) {
+        if (this.recyclerView == recyclerView)
+            return;
+        detachFromRecyclerView();
+        this.recyclerView = recyclerView;
+        if (recyclerView == null)
+            return;
+        recyclerView.addItemDecoration(this);
+        recyclerView.addOnItemTouchListener(this);
+        recyclerView.addOnScrollListener(scrollListener);
+    }
+
+    public void detachFromRecyclerView() {
+        if (recyclerView == null)
+            return;
+        recyclerView.removeItemDecoration(this);
+        recyclerView.removeOnItemTouchListener(this);
+        recyclerView.removeOnScrollListener(scrollListener);
+        recyclerView.removeCallbacks(hideRunnable);
+        recyclerView = null;
+        dragging = false;
+    }
+
+    private boolean isScrollable(RecyclerView parent) {
+        return parent.computeVerticalScrollRange() >=
+                MIN_PAGES * parent.computeVerticalScrollExtent();
+    }
+
+    private boolean isThumbVisible(RecyclerView parent) {
+        return dragging || (SystemClock.uptimeMillis() - lastScrollTime < HIDE_DELAY_MILLIS &&
+                isScrollable(parent));
+    }
+
+    /**
+     * @return How far down the list is scrolled, from 0 to 1.
+     */
+    private float getScrollFraction(RecyclerView parent) {
+        if (dragging)
+            return dragFraction;
+        int scrollable = parent.computeVerticalScrollRange() -
+                parent.computeVerticalScrollExtent();
+        return scrollable <= 0 ? 0 :
+                Math.min(1f, (float) parent.computeVerticalScrollOffset() / scrollable);
+    }
+
+    private float getThumbTop(RecyclerView parent) {
+        int track = parent.getHeight() - parent.getPaddingTop() - parent.getPaddingBottom() -
+                thumbHeight;
+        return parent.getPaddingTop() + getScrollFraction(parent) * track;
+    }
+
+    @Override
+    public void onDrawOver(Canvas c, RecyclerView parent, RecyclerView.State state) {
+        if (!isThumbVisible(parent))
+            return;
+        float top = getThumbTop(parent);
+        float right = parent.getWidth() - margin;
+        rect.set(right - thumbWidth, top, right, top + thumbHeight);
+        c.drawRoundRect(rect, thumbWidth / 2f, thumbWidth / 2f, thumbPaint);
+
+        if (!dragging || label == null)
+            return;
+        //A bubble, with its bottom right corner pointing to the thumb
+        float bubbleRight = right - thumbWidth - margin;
+        float bubbleBottom = Math.max(top + thumbHeight / 2f, parent.getPaddingTop() + bubbleSize);
+        rect.set(bubbleRight - bubbleSize, bubbleBottom - bubbleSize, bubbleRight, bubbleBottom);
+        c.drawRoundRect(rect, bubbleSize / 2f, bubbleSize / 2f, bubblePaint);
+        c.drawRect(bubbleRight - bubbleSize / 2f, bubbleBottom - bubbleSize / 2f, bubbleRight,
+                bubbleBottom, bubblePaint);
+        float textY = rect.centerY() - (textPaint.descent() + textPaint.ascent()) / 2;
+        c.drawText(label, rect.centerX(), textY, textPaint);
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(RecyclerView rv, MotionEvent e) {
+        if (e.getActionMasked() != MotionEvent.ACTION_DOWN || !isThumbVisible(rv))
+            return false;
+        if (e.getX() < rv.getWidth() - touchWidth)
+            return false;
+        float top = getThumbTop(rv);
+        if (e.getY() < top - thumbHeight / 2f || e.getY() > top + thumbHeight * 1.5f)
+            return false;
+        dragging = true;
+        labelSectionStart = -1; //The subheaders may have changed since the last drag
+        label = null;
+        rv.stopScroll();
+        rv.getParent().requestDisallowInterceptTouchEvent(true);
+        scrollTo(rv, e.getY());
+        return true;
+    }
+
+    @Override
+    public void onTouchEvent(RecyclerView rv, MotionEvent e) {
+        if (!dragging)
+            return;
+        switch (e.getActionMasked()) {
+            case MotionEvent.ACTION_MOVE:
+                scrollTo(rv, e.getY());
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                dragging = false;
+                lastScrollTime = SystemClock.uptimeMillis();
+                rv.removeCallbacks(hideRunnable);
+                rv.postDelayed(hideRunnable, HIDE_DELAY_MILLIS);
+                rv.invalidate();
+                break;
+        }
+    }
+
+    @Override
+    public void onRequestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+    }
+
+    private void scrollTo(RecyclerView rv, float y) {
+        RecyclerView.Adapter adapter = rv.getAdapter();
+        if (adapter == null || adapter.getItemCount() == 0)
+            return;
+        int track = rv.getHeight() - rv.getPaddingTop() - rv.getPaddingBottom() - thumbHeight;
+        dragFraction = track <= 0 ? 0 : Math.max(0f, Math.min(1f,
+                (y - rv.getPaddingTop() - thumbHeight / 2f) / track));
+        int position = Math.min((int) (dragFraction * adapter.getItemCount()),
+                adapter.getItemCount() - 1);
+
+        RecyclerView.LayoutManager layoutManager = rv.getLayoutManager();
+        if (layoutManager instanceof LinearLayoutManager)
+            ((LinearLayoutManager) layoutManager).scrollToPositionWithOffset(position, 0);
+        else
+            rv.scrollToPosition(position);
+
+        updateLabel(adapter, position);
+        rv.invalidate();
+    }
+
+    private void updateLabel(RecyclerView.Adapter adapter, int position) {
+        if (!(adapter instanceof BaseAdapter)) {
+            label = null;
+            return;
+        }
+        BaseAdapter baseAdapter = (BaseAdapter) adapter;
+        int index = position - baseAdapter.getRealAdapterPosition(0);
+        int sectionStart = index < 0 ? -1 : baseAdapter.getSectionIndex().getSectionStart(index);
+        if (sectionStart == labelSectionStart && label != null)
+            return;
+        labelSectionStart = sectionStart;
+        label = sectionStart < 0 ? null : baseAdapter.getSubHeaderText(sectionStart);
+        //The bubble shows the first letter, a whole code point (e.g. an emoji)
+        if (label != null && label.isEmpty())
+            label = null;
+        else if (label != null)
+            label = label.substring(0, Character.charCount(label.codePointAt(0)));
+    }
+}
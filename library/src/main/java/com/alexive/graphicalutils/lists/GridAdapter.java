@@ -36,20 +36,16 @@ import com.alexive.graphicalutils.view.ViewUtils;
 
 /**
  * Base grid adapter class. Provides subheaders, click listeners setting, etc.
+ * Grid items and ordinary list items can be mixed: lay them out with
+ * {@link #getHybridLayoutManager(int)}, or with a GridLayoutManager from
+ * {@link #getGridLayoutManager(Context, int)}.
  */
 public abstract class GridAdapter extends ListAdapter {
-    /*
-    ---------------------
-    * ---------------------
-    * TODO MAJOR REFACTOR!!!!!!! or just make it an hybrid (rows with n columns or w/ 1)
-    * ---------------------
-    * ---------------------
-     */
-
     private final DetailsType mDetailsViewType;
     private final String DETAILS_VIEW_TAG = "detailsviewtag";
     private GridItemSpecs gridSpecs;
     private int numCols;
+    private SpanIndexCache spanIndexCache;
 
     public GridAdapter(DetailsType type) {
         super();
@@ -72,6 +68,7 @@ public abstract class GridAdapter extends ListAdapter {
                 .grid_float_headerfooter_tile : R.layout.grid_dummy_tile, group, false);
         base.setClickable(true);
         AwesomeViewHolder result = new AwesomeViewHolder(base);
+        result.owner = this;
         setListenerForHolder(result);
 
         ProportionalImageView imageView = (ProportionalImageView) base.findViewById(R.id.imageView);
@@ -84,7 +81,7 @@ public abstract class GridAdapter extends ListAdapter {
         View details = getDetailsView(inflater, group, result);
 
         ImageButton imageButton = (ImageButton) details.findViewById(R.id.imageButton);
-        imageButton.setOnClickListener(new ButtonListener(result));
+        imageButton.setOnClickListener(dispatcher);
         result.setButton(imageButton);
 
         if (gridSpecs.detailsViewFloats) {
@@ -145,29 +142,31 @@ public abstract class GridAdapter extends ListAdapter {
         return false;
     }
 
+    /**
+     * Binds data to an item, either a grid item or an ordinary list item. Override either this
+     * or {@link #bindDataToItem(int, View, View, ImageView, ImageButton, TextView...)}; this
+     * one is preferred, since it doesn't allocate an array of TextViews on every bind.
+     * The default implementation calls bindDataToItem.
+     *
+     * @param index The index of the item
+     * @param row   The item's views. {@link ItemRow#getDetailsView()} is the grid item's
+     *              details view, typically under the image
+     */
     @Override
-    public void bindDataToListItem(int index,
-                                   View itemView,
-                                   ImageView iconOrAvatar,
-                                   ImageButton button,
-                                   TextView... texts) {
-        //useless
-        //you should override bindDataToItem
-    }
-
-    @Override
-    protected void preBindData(int i, AwesomeViewHolder awesomeViewHolder) {
-        bindDataToItem(i,
-                awesomeViewHolder.itemView,
-                awesomeViewHolder.getDetailsView(),
-                awesomeViewHolder.getImageView1(),
-                awesomeViewHolder.button,
-                awesomeViewHolder.text1,
-                awesomeViewHolder.text2);
+    public void bindDataToRow(int index, ItemRow row) {
+        bindDataToItem(index,
+                row.getItemView(),
+                row.getDetailsView(),
+                row.getImageView(),
+                row.getButton(),
+                row.getText1(),
+                row.getText2());
     }
 
     /**
-     * Fills in the list item
+     * Fills in the list item. Only called if {@link #bindDataToRow(int, ItemRow)} isn't
+     * overridden, so one of the two must be: the default implementation throws an
+     * IllegalStateException.
      *
      * @param index        The index of the item
      * @param itemView     The list item's view
@@ -176,13 +175,29 @@ public abstract class GridAdapter extends ListAdapter {
      * @param imageButton  If it's an ordinary list item, it's button
      * @param txt          The item's text views, from top to bottom, left to right
      */
-    public abstract void bindDataToItem(int index,
-                                        View itemView,
-                                        View detailsView,
-                                        ImageView imageViewOrAvatar,
-                                        ImageButton imageButton,
-                                        TextView... txt);
+    public void bindDataToItem(int index,
+                               View itemView,
+                               View detailsView,
+                               ImageView imageViewOrAvatar,
+                               ImageButton imageButton,
+                               TextView... txt) {
+        throw new IllegalStateException(getClass().getName() + " must override " +
+                "bindDataToRow(int, ItemRow) or bindDataToItem(...)");
+    }
+
 
+    @Override
+    public void addHeaderView(View headerView) {
+        super.addHeaderView(headerView);
+        if (spanIndexCache != null)
+            spanIndexCache.invalidate();
+    }
+
+    SpanIndexCache getSpanIndexCache() {
+        if (spanIndexCache == null)
+            spanIndexCache = new SpanIndexCache(this);
+        return spanIndexCache;
+    }
 
     public void setItemSpecs(GridItemSpecs specs) {
         gridSpecs = specs;
@@ -193,19 +208,45 @@ public abstract class GridAdapter extends ListAdapter {
     public GridLayoutManager getGridLayoutManager(Context ctx, int numColumns) {
         this.numCols = numColumns;
         GridLayoutManager mngr = new GridLayoutManager(ctx, numColumns);
-        mngr.setSpanSizeLookup(new GridLayoutManager.SpanSizeLookup() {
-            @Override
-            public int getSpanSize(int position) {
-                return getItemViewType(position) == ListItemType.GRID_ITEM.resId ? 1 : numCols;
-            }
-        });
+        mngr.setSpanSizeLookup(new CachedSpanSizeLookup(mngr));
         return mngr;
     }
 
+    /**
+     * Like {@link #getGridLayoutManager(Context, int)}, but the number of columns is as many as
+     * fit in the RecyclerView's width, each at least minTileWidthDp wide. It's computed again
+     * when the RecyclerView is resized (e.g. on rotation, or in multi-window) and the items are
+     * laid out again, but not rebound.
+     */
+    public GridLayoutManager getAdaptiveGridLayoutManager(Context ctx, int minTileWidthDp) {
+        this.numCols = 1;
+        GridLayoutManager mngr = new AdaptiveGridLayoutManager(ctx,
+                ViewUtils.convertDPtoPixels(ctx, minTileWidthDp));
+        mngr.setSpanSizeLookup(new CachedSpanSizeLookup(mngr));
+        return mngr;
+    }
+
+    /**
+     * @return A LayoutManager made for this adapter: grid items in rows of numColumns, every
+     * other item in a row of its own. Unlike a GridLayoutManager, it doesn't go through the
+     * items from the top to find the row of a position, see {@link HybridGridLayoutManager}.
+     */
+    public HybridGridLayoutManager getHybridLayoutManager(int numColumns) {
+        this.numCols = numColumns;
+        return new HybridGridLayoutManager(this, numColumns);
+    }
+
+    /**
+     * @return An ItemDecoration that puts 1dp between the tiles, and between the tiles and the
+     * edges of the list. Subheaders aren't spaced.
+     */
     public RecyclerView.ItemDecoration getDecorationForSmallSpacing(Context c) {
         return new Decorator(ViewUtils.convertDPtoPixels(c, 1));
     }
 
+    /**
+     * Same as {@link #getDecorationForSmallSpacing(Context)}, with 4dp.
+     */
     public RecyclerView.ItemDecoration getDecorationForLargeSpacing(Context c) {
         return new Decorator(ViewUtils.convertDPtoPixels(c, 4));
     }
@@ -223,38 +264,107 @@ public abstract class GridAdapter extends ListAdapter {
         public boolean forceSquareImage = true;
     }
 
+    /**
+     * Spaces the tiles evenly: the space between two tiles is the same as between a tile and the
+     * edge of the list, and every tile is as wide as the others. The column and row of each
+     * item come from the {@link SpanIndexCache}, so subheaders and list items taking up a whole
+     * row start a new one.
+     */
     private class Decorator extends RecyclerView.ItemDecoration {
 
-        private final int padding;
+        private final int spacing;
 
-        public Decorator(int padding) {
-            this.padding = padding;
+        public Decorator(int spacing) {
+            this.spacing = spacing;
         }
 
         @Override
         public void getItemOffsets(Rect outRect, View view, RecyclerView parent, RecyclerView.State state) {
-            super.getItemOffsets(outRect, view, parent, state);
+            outRect.set(0, 0, 0, 0);
             int pos = parent.getChildAdapterPosition(view);
-            if (getListItemDataType(pos) == ListItemType.SUB_HEADER)
+            if (pos == RecyclerView.NO_POSITION)
                 return;
-            //TODO Faster approach
-            //TODO actually compute the list item's padding IF it's on the edge.
-            //Having subheaders/items taking up a full row made the code I had before messed up
-//      //If the list has subheaders, without this the padding will be VERY EFFED Up.
-//      int newPos = 0;
-//      for (int i = 0; i <= pos; i++) {
-//        if (isSubHeader(i)) {
-//         newPos = 0;
-//        }else
-//          newPos++;
-//      }
-//
-//      if(newPos % numCols != 0)
-            outRect.left = padding;
-//      if ((newPos + 1) % numCols != 0);
-            outRect.right = padding;
-            outRect.bottom = padding;
-            outRect.top = padding;
+            SpanIndexCache spans = getSpanIndexCache();
+            RecyclerView.LayoutManager layoutManager = parent.getLayoutManager();
+            if (layoutManager instanceof GridLayoutManager)
+                spans.setSpanCount(((GridLayoutManager) layoutManager).getSpanCount());
+            else if (layoutManager instanceof HybridGridLayoutManager)
+                spans.setSpanCount(((HybridGridLayoutManager) layoutManager).getSpanCount());
+            else
+                spans.setSpanCount(numCols);
+            if (!spans.isSpaced(pos))
+                return;
+            int spanCount = spans.getSpanCount();
+            if (spans.getSpanSize(pos) == spanCount) {
+                outRect.left = spacing;
+                outRect.right = spacing;
+            } else {
+                //Each column gives up the same total, so all the tiles are equally wide
+                int column = spans.getSpanIndex(pos);
+                outRect.left = spacing - column * spacing / spanCount;
+                outRect.right = (column + 1) * spacing / spanCount;
+            }
+            if (spans.isInFirstRow(pos))
+                outRect.top = spacing;
+            outRect.bottom = spacing;
+        }
+    }
+
+    /**
+     * Answers GridLayoutManager's span queries from the {@link SpanIndexCache}, so the view
+     * types are only looked up once per item, and the span index of a position isn't found by
+     * going through all the positions before it. The cache is already a span index cache, so
+     * GridLayoutManager's own one isn't enabled.
+     */
+    private class CachedSpanSizeLookup extends GridLayoutManager.SpanSizeLookup {
+
+        private final GridLayoutManager layoutManager;
+
+        CachedSpanSizeLookup(GridLayoutManager layoutManager) {
+            this.layoutManager = layoutManager;
+        }
+
+        @Override
+        public int getSpanSize(int position) {
+            SpanIndexCache spans = getSpanIndexCache();
+            spans.setSpanCount(layoutManager.getSpanCount());
+            return spans.getSpanSize(position);
+        }
+
+        @Override
+        public int getSpanIndex(int position, int spanCount) {
+            SpanIndexCache spans = getSpanIndexCache();
+            spans.setSpanCount(spanCount);
+            return spans.getSpanIndex(position);
+        }
+
+        @Override
+        public int getSpanGroupIndex(int adapterPosition, int spanCount) {
+            SpanIndexCache spans = getSpanIndexCache();
+            spans.setSpanCount(spanCount);
+            return spans.getSpanGroupIndex(adapterPosition);
+        }
+    }
+
+    private class AdaptiveGridLayoutManager extends GridLayoutManager {
+
+        private final int minTileWidth;
+
+        AdaptiveGridLayoutManager(Context context, int minTileWidth) {
+            super(context, 1);
+            this.minTileWidth = Math.max(minTileWidth, 1);
+        }
+
+        @Override
+        public void onLayoutChildren(RecyclerView.Recycler recycler, RecyclerView.State state) {
+            int width = getWidth() - getPaddingLeft() - getPaddingRight();
+            if (width > 0) {
+                int spanCount = Math.max(1, width / minTileWidth);
+                //Only a change triggers another layout, so it's cheap to check every time
+                setSpanCount(spanCount);
+                numCols = spanCount;
+            }
+            super.onLayoutChildren(recycler, state);
         }
     }
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+/**
+ * The bit mixer shared by the hash tables and {@link StableIds}.
+ */
+final class Hashing {
+
+    private Hashing() {
+    }
+
+    /**
+     * murmur3's 64 bit finalizer. It's a bijection, so different longs never get the same
+     * result.
+     */
+    static long fmix64(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * Spreads the bits of the value, for a hash table slot, so sequential ids (the most common
+     * case) don't end up in the same cluster.
+     */
+    static int mix(long value) {
+        return (int) fmix64(value);
+    }
+}
@@ -0,0 +1,515 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import android.graphics.PointF;
+import android.graphics.Rect;
+import android.os.Bundle;
+import android.os.Parcelable;
+import android.support.v7.widget.LinearSmoothScroller;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.Arrays;
+
+/**
+ * A vertical LayoutManager for {@link GridAdapter}s: grid items are laid out in rows of
+ * spanCount columns, every other item (subheaders, list items, the header view) takes up a row
+ * of its own.
+ * <p>
+ * The rows aren't found by walking the items from the top, like GridLayoutManager's span groups:
+ * the items are split in blocks, either a run of grid items or a single whole row item, and the
+ * row each block starts at is kept in a table. Finding the row of a position (and the positions
+ * in a row) is a binary search on it, so {@link #scrollToPosition(int)} costs O(log blocks),
+ * about O(log sections), no matter how far the position is. The table is built again from the
+ * first changed position on when the adapter is notified of a change.
+ * <p>
+ * Usage: {@code recyclerView.setLayoutManager(adapter.getHybridLayoutManager(3));}
+ */
+public class HybridGridLayoutManager extends RecyclerView.LayoutManager
+        implements RecyclerView.SmoothScroller.ScrollVectorProvider {
+
+    private static final String STATE_POSITION = "position";
+    private static final String STATE_OFFSET = "offset";
+    /**
+     * Value of dirtyFrom when the table is up to date.
+     */
+    private static final int CLEAN = Integer.MAX_VALUE;
+
+    /**
+     * Where the view types are read from: the RecyclerView's adapter, which may have been
+     * swapped since this was created.
+     */
+    private RecyclerView.Adapter adapter;
+    private final Rect insets = new Rect();
+    private int spanCount;
+    /**
+     * The views of the row being added, so they're laid out after the tallest one is known.
+     */
+    private View[] rowViews;
+    private int pendingPosition = RecyclerView.NO_POSITION;
+    private int pendingOffset = 0;
+
+    /*
+     * The rows. Block b starts at position blockStarts[b] and row blockFirstRows[b]; if it's
+     * made of grid items it takes up ceil(items / spanCount) rows, otherwise it's a single
+     * item and a single row.
+     */
+    private int[] blockStarts = new int[16];
+    private int[] blockFirstRows = new int[16];
+    private boolean[] blockIsTiles = new boolean[16];
+    private int blockCount = 0;
+    private int itemCount = 0;
+    private int rowCount = 0;
+    /**
+     * The positions from here on must be looked up again.
+     */
+    private int dirtyFrom = 0;
+
+    public HybridGridLayoutManager(GridAdapter adapter, int spanCount) {
+        this.adapter = adapter;
+        setSpanCount(spanCount);
+    }
+
+    public int getSpanCount() {
+        return spanCount;
+    }
+
+    public void setSpanCount(int spanCount) {
+        if (spanCount < 1)
+            throw new IllegalArgumentException("The span count must be at least 1, it was " +
+                    spanCount);
+        if (spanCount == this.spanCount)
+            return;
+        this.spanCount = spanCount;
+        rowViews = new View[spanCount];
+        invalidateRows(0);
+        requestLayout();
+    }
+
+    /**
+     * Scrolls so the row of position is offset pixels below the top of the list.
+     */
+    public void scrollToPositionWithOffset(int position, int offset) {
+        pendingPosition = position;
+        pendingOffset = offset;
+        requestLayout();
+    }
+
+    @Override
+    public void scrollToPosition(int position) {
+        scrollToPositionWithOffset(position, 0);
+    }
+
+    @Override
+    public void smoothScrollToPosition(RecyclerView recyclerView, RecyclerView.State state,
+                                       int position) {
+        LinearSmoothScroller scroller = new LinearSmoothScroller(recyclerView.getContext());
+        scroller.setTargetPosition(position);
+        startSmoothScroll(scroller);
+    }
+
+    @Override
+    public PointF computeScrollVectorForPosition(int targetPosition) {
+        if (getChildCount() == 0)
+            return null;
+        return new PointF(0, targetPosition < getPosition(getChildAt(0)) ? -1 : 1);
+    }
+
+    @Override
+    public RecyclerView.LayoutParams generateDefaultLayoutParams() {
+        return new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT);
+    }
+
+    @Override
+    public boolean canScrollVertically() {
+        return true;
+    }
+
+    @Override
+    public void onLayoutChildren(RecyclerView.Recycler recycler, RecyclerView.State state) {
+        if (state.getItemCount() == 0) {
+            removeAndRecycleAllViews(recycler);
+            return;
+        }
+        updateRows(state.getItemCount());
+
+        int anchorRow = 0;
+        int anchorTop = getPaddingTop();
+        if (pendingPosition != RecyclerView.NO_POSITION) {
+            anchorRow = getRowForPosition(Math.min(pendingPosition, itemCount - 1));
+            anchorTop += pendingOffset;
+            pendingPosition = RecyclerView.NO_POSITION;
+        } else {
+            View anchor = findAnchorChild();
+            if (anchor != null) {
+                anchorRow = getRowForPosition(getPosition(anchor));
+                anchorTop = getOuterTop(anchor);
+            }
+        }
+
+        detachAndScrapAttachedViews(recycler);
+        int top = getPaddingTop();
+        int bottom = getHeight() - getPaddingBottom();
+        //At least the anchor's row is laid out, even if it was below the list
+        fillBelow(recycler, anchorRow, Math.min(anchorTop, bottom - 1), bottom);
+        fillAbove(recycler, getFirstRow() - 1, getFirstTop(), top);
+        //Don't leave a gap above the first row or below the last one
+        if (getFirstRow() == 0 && getFirstTop() > top) {
+            offsetChildrenVertical(top - getFirstTop());
+            fillBelow(recycler, getLastRow() + 1, getLastBottom(), bottom);
+        }
+        if (getLastRow() == rowCount - 1 && getLastBottom() < bottom) {
+            offsetChildrenVertical(bottom - getLastBottom());
+            fillAbove(recycler, getFirstRow() - 1, getFirstTop(), top);
+            if (getFirstRow() == 0 && getFirstTop() > top)
+                offsetChildrenVertical(top - getFirstTop());
+        }
+        recycleHiddenRows(recycler);
+    }
+
+    @Override
+    public int scrollVerticallyBy(int dy, RecyclerView.Recycler recycler,
+                                  RecyclerView.State state) {
+        if (getChildCount() == 0 || dy == 0)
+            return 0;
+        int scrolled;
+        if (dy > 0) {
+            int bottom = getHeight() - getPaddingBottom();
+            fillBelow(recycler, getLastRow() + 1, getLastBottom(), bottom + dy);
+            scrolled = Math.min(dy, Math.max(0, getLastBottom() - bottom));
+        } else {
+            int top = getPaddingTop();
+            fillAbove(recycler, getFirstRow() - 1, getFirstTop(), top + dy);
+            scrolled = -Math.min(-dy, Math.max(0, top - getFirstTop()));
+        }
+        offsetChildrenVertical(-scrolled);
+        recycleHiddenRows(recycler);
+        return scrolled;
+    }
+
+    @Override
+    public int computeVerticalScrollExtent(RecyclerView.State state) {
+        return getChildCount() == 0 ? 0 : getHeight() - getPaddingTop() - getPaddingBottom();
+    }
+
+    @Override
+    public int computeVerticalScrollOffset(RecyclerView.State state) {
+        if (getChildCount() == 0)
+            return 0;
+        return Math.round(getFirstRow() * getAverageRowHeight()) + getPaddingTop() -
+                getFirstTop();
+    }
+
+    @Override
+    public int computeVerticalScrollRange(RecyclerView.State state) {
+        return getChildCount() == 0 ? 0 : Math.round(rowCount * getAverageRowHeight());
+    }
+
+    @Override
+    public Parcelable onSaveInstanceState() {
+        Bundle state = new Bundle();
+        if (pendingPosition != RecyclerView.NO_POSITION) {
+            state.putInt(STATE_POSITION, pendingPosition);
+            state.putInt(STATE_OFFSET, pendingOffset);
+        } else if (getChildCount() > 0) {
+            state.putInt(STATE_POSITION, getPosition(getChildAt(0)));
+            state.putInt(STATE_OFFSET, getFirstTop() - getPaddingTop());
+        }
+        return state;
+    }
+
+    @Override
+    public void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof Bundle))
+            return;
+        Bundle bundle = (Bundle) state;
+        if (bundle.containsKey(STATE_POSITION))
+            scrollToPositionWithOffset(bundle.getInt(STATE_POSITION),
+                    bundle.getInt(STATE_OFFSET));
+    }
+
+    @Override
+    public void onAdapterChanged(RecyclerView.Adapter oldAdapter, RecyclerView.Adapter newAdapter) {
+        if (newAdapter != null)
+            adapter = newAdapter;
+        invalidateRows(0);
+    }
+
+    @Override
+    public void onAttachedToWindow(RecyclerView view) {
+        super.onAttachedToWindow(view);
+        //The RecyclerView's adapter may not be the one this was created for
+        if (view.getAdapter() != null && view.getAdapter() != adapter) {
+            adapter = view.getAdapter();
+            invalidateRows(0);
+        }
+    }
+
+    @Override
+    public void onItemsChanged(RecyclerView recyclerView) {
+        invalidateRows(0);
+    }
+
+    @Override
+    public void onItemsAdded(RecyclerView recyclerView, int positionStart, int itemCount) {
+        invalidateRows(positionStart);
+    }
+
+    @Override
+    public void onItemsRemoved(RecyclerView recyclerView, int positionStart, int itemCount) {
+        invalidateRows(positionStart);
+    }
+
+    @Override
+    public void onItemsUpdated(RecyclerView recyclerView, int positionStart, int itemCount) {
+        invalidateRows(positionStart);
+    }
+
+    @Override
+    public void onItemsUpdated(RecyclerView recyclerView, int positionStart, int itemCount,
+                               Object payload) {
+        //Showing/checking the checkboxes doesn't change the view types
+        if (!Payloads.isCheckBoxPayload(payload))
+            invalidateRows(positionStart);
+    }
+
+    @Override
+    public void onItemsMoved(RecyclerView recyclerView, int from, int to, int itemCount) {
+        invalidateRows(Math.min(from, to));
+    }
+
+    private void invalidateRows(int position) {
+        dirtyFrom = Math.min(dirtyFrom, Math.max(position, 0));
+    }
+
+    /**
+     * Brings the row table up to date, from the first changed position on.
+     */
+    private void updateRows(int count) {
+        if (dirtyFrom == CLEAN && count == itemCount)
+            return;
+        //If the count changed without the adapter being notified, anything could have changed
+        int from = dirtyFrom == CLEAN ? 0 : Math.min(dirtyFrom, itemCount);
+        //The block before may have to take the items from there on, if they're of its kind
+        int block = Math.max(findBlock(from) - 1, 0);
+        int position = block < blockCount ? blockStarts[block] : 0;
+        int row = block < blockCount ? blockFirstRows[block] : 0;
+        blockCount = Math.min(block, blockCount);
+
+        int runStart = -1;
+        for (; position < count; position++) {
+            boolean tile = adapter.getItemViewType(position) == ListItemType.GRID_ITEM.resId;
+            if (tile && runStart >= 0)
+                continue;
+            if (runStart >= 0) {
+                row += getRowsForTiles(position - runStart);
+                runStart = -1;
+            }
+            addBlock(position, row, tile);
+            if (tile)
+                runStart = position;
+            else
+                row++;
+        }
+        if (runStart >= 0)
+            row += getRowsForTiles(count - runStart);
+        itemCount = count;
+        rowCount = row;
+        dirtyFrom = CLEAN;
+    }
+
+    private void addBlock(int start, int firstRow, boolean tiles) {
+        if (blockCount == blockStarts.length) {
+            blockStarts = Arrays.copyOf(blockStarts, blockCount * 2);
+            blockFirstRows = Arrays.copyOf(blockFirstRows, blockCount * 2);
+            blockIsTiles = Arrays.copyOf(blockIsTiles, blockCount * 2);
+        }
+        blockStarts[blockCount] = start;
+        blockFirstRows[blockCount] = firstRow;
+        blockIsTiles[blockCount] = tiles;
+        blockCount++;
+    }
+
+    private int getRowsForTiles(int tiles) {
+        return (tiles + spanCount - 1) / spanCount;
+    }
+
+    /**
+     * @return The block position is in, or -1 if there are no blocks.
+     */
+    private int findBlock(int position) {
+        int found = Arrays.binarySearch(blockStarts, 0, blockCount, position);
+        //If it isn't a block's start, binarySearch returns -(insertion point) - 1
+        return found >= 0 ? found : -found - 2;
+    }
+
+    private int findBlockForRow(int row) {
+        int found = Arrays.binarySearch(blockFirstRows, 0, blockCount, row);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    private int getRowForPosition(int position) {
+        int block = findBlock(position);
+        if (!blockIsTiles[block])
+            return blockFirstRows[block];
+        return blockFirstRows[block] + (position - blockStarts[block]) / spanCount;
+    }
+
+    private int getRowStart(int row) {
+        int block = findBlockForRow(row);
+        if (!blockIsTiles[block])
+            return blockStarts[block];
+        return blockStarts[block] + (row - blockFirstRows[block]) * spanCount;
+    }
+
+    private int getRowEnd(int row) {
+        int block = findBlockForRow(row);
+        if (!blockIsTiles[block])
+            return blockStarts[block] + 1;
+        int blockEnd = block + 1 < blockCount ? blockStarts[block + 1] : itemCount;
+        return Math.min(getRowStart(row) + spanCount, blockEnd);
+    }
+
+    private View findAnchorChild() {
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            RecyclerView.LayoutParams params = (RecyclerView.LayoutParams) child.getLayoutParams();
+            if (!params.isItemRemoved() && params.getViewLayoutPosition() < itemCount)
+                return child;
+        }
+        return null;
+    }
+
+    private void fillBelow(RecyclerView.Recycler recycler, int row, int top, int limit) {
+        while (top < limit && row < rowCount)
+            top += addRow(recycler, row++, top, true);
+    }
+
+    private void fillAbove(RecyclerView.Recycler recycler, int row, int bottom, int limit) {
+        while (bottom > limit && row >= 0)
+            bottom -= addRow(recycler, row--, bottom, false);
+    }
+
+    /**
+     * Adds the views of a row, below edge or above it.
+     *
+     * @return The row's height.
+     */
+    private int addRow(RecyclerView.Recycler recycler, int row, int edge, boolean below) {
+        int start = getRowStart(row);
+        int count = getRowEnd(row) - start;
+        int columns = blockIsTiles[findBlockForRow(row)] ? spanCount : 1;
+        int width = getWidth() - getPaddingLeft() - getPaddingRight();
+
+        int height = 0;
+        for (int i = 0; i < count; i++) {
+            View view = recycler.getViewForPosition(start + i);
+            if (below)
+                addView(view);
+            else
+                addView(view, i);
+            measureInCell(view, getColumnWidth(i, columns, width), -1);
+            height = Math.max(height, getDecoratedMeasuredHeight(view) + getVerticalMargins(view));
+            rowViews[i] = view;
+        }
+
+        int top = below ? edge : edge - height;
+        int left = getPaddingLeft();
+        for (int i = 0; i < count; i++) {
+            View view = rowViews[i];
+            rowViews[i] = null;
+            int columnWidth = getColumnWidth(i, columns, width);
+            //All the items in a row are as tall, so whole rows are recycled together
+            if (getDecoratedMeasuredHeight(view) + getVerticalMargins(view) != height)
+                measureInCell(view, columnWidth, height);
+            layoutDecoratedWithMargins(view, left, top, left + columnWidth, top + height);
+            left += columnWidth;
+        }
+        return height;
+    }
+
+    private static int getColumnWidth(int column, int columns, int width) {
+        return (column + 1) * width / columns - column * width / columns;
+    }
+
+    /**
+     * Measures a view to fill a cell width pixels wide and, if height isn't negative, height
+     * pixels tall, decorations and margins included.
+     */
+    private void measureInCell(View view, int width, int height) {
+        calculateItemDecorationsForChild(view, insets);
+        RecyclerView.LayoutParams params = (RecyclerView.LayoutParams) view.getLayoutParams();
+        int horizontal = insets.left + insets.right + params.leftMargin + params.rightMargin;
+        int vertical = insets.top + insets.bottom + params.topMargin + params.bottomMargin;
+        int widthSpec = View.MeasureSpec.makeMeasureSpec(Math.max(0, width - horizontal),
+                View.MeasureSpec.EXACTLY);
+        int heightSpec = height >= 0 ?
+                View.MeasureSpec.makeMeasureSpec(Math.max(0, height - vertical),
+                        View.MeasureSpec.EXACTLY) :
+                getChildMeasureSpec(getHeight(), getHeightMode(),
+                        getPaddingTop() + getPaddingBottom() + vertical, params.height, true);
+        view.measure(widthSpec, heightSpec);
+    }
+
+    private void recycleHiddenRows(RecyclerView.Recycler recycler) {
+        int top = getPaddingTop();
+        int bottom = getHeight() - getPaddingBottom();
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            View child = getChildAt(i);
+            if (getOuterBottom(child) <= top || getOuterTop(child) >= bottom)
+                removeAndRecycleViewAt(i, recycler);
+        }
+    }
+
+    private float getAverageRowHeight() {
+        return (float) (getLastBottom() - getFirstTop()) / (getLastRow() - getFirstRow() + 1);
+    }
+
+    private int getFirstRow() {
+        return getRowForPosition(getPosition(getChildAt(0)));
+    }
+
+    private int getLastRow() {
+        return getRowForPosition(getPosition(getChildAt(getChildCount() - 1)));
+    }
+
+    private int getFirstTop() {
+        return getOuterTop(getChildAt(0));
+    }
+
+    private int getLastBottom() {
+        return getOuterBottom(getChildAt(getChildCount() - 1));
+    }
+
+    private int getOuterTop(View child) {
+        return getDecoratedTop(child) -
+                ((RecyclerView.LayoutParams) child.getLayoutParams()).topMargin;
+    }
+
+    private int getOuterBottom(View child) {
+        return getDecoratedBottom(child) +
+                ((RecyclerView.LayoutParams) child.getLayoutParams()).bottomMargin;
+    }
+
+    private static int getVerticalMargins(View child) {
+        RecyclerView.LayoutParams params = (RecyclerView.LayoutParams) child.getLayoutParams();
+        return params.topMargin + params.bottomMargin;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * The index of each item of a {@link ListAdapter} by its id
+ * ({@link ListAdapter#getIdForItem(int)}), so an item is found in O(1) instead of going
+ * through the list.
+ * <p>
+ * It's built the first time it's needed, in O(n), and again after the items are inserted,
+ * removed or moved. Changed items are usually the same items, with other contents, so a
+ * change only makes the index suspect: a lookup whose result doesn't match the item's id then
+ * builds it again.
+ */
+final class IdIndex {
+
+    private final ListAdapter adapter;
+    private final LongIntHashMap indexes = new LongIntHashMap(0);
+    private boolean valid = false;
+    /**
+     * Whether an item may have changed its id since the index was built.
+     */
+    private boolean mayBeStale = false;
+
+    IdIndex(ListAdapter adapter) {
+        this.adapter = adapter;
+        adapter.registerAdapterDataObserver(new InvalidatingObserver());
+    }
+
+    /**
+     * @return The index of the item with that id, or -1 if there's none.
+     */
+    int indexOf(long id) {
+        if (!valid)
+            build();
+        int index = indexes.get(id);
+        if (index >= 0 && index < adapter.getNumItems() && adapter.getIdForItem(index) == id)
+            return index;
+        if (!mayBeStale)
+            return -1;
+        build();
+        return indexes.get(id);
+    }
+
+    /**
+     * Builds the index, checking that no two items have the same id if
+     * {@link ListAdapter#isKeyCollisionCheckEnabled()}.
+     */
+    void build() {
+        int count = adapter.getNumItems();
+        boolean check = adapter.isKeyCollisionCheckEnabled();
+        indexes.clear(count);
+        for (int i = 0; i < count; i++) {
+            int previous = indexes.put(adapter.getIdForItem(i), i);
+            if (previous >= 0 && check)
+                adapter.onDuplicateId(previous, i);
+        }
+        valid = true;
+        mayBeStale = false;
+    }
+
+    /**
+     * Forgets the index, e.g. because the ids changed.
+     */
+    void invalidate() {
+        valid = false;
+        //Collisions are found as soon as the data changes, not whenever an item is looked up
+        if (adapter.isKeyCollisionCheckEnabled())
+            build();
+    }
+
+    private class InvalidatingObserver extends RecyclerView.AdapterDataObserver {
+
+        @Override
+        public void onChanged() {
+            invalidate();
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+            //Showing/checking the checkboxes doesn't change the ids
+            if (!Payloads.isCheckBoxPayload(payload))
+                mayBeStale = true;
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            mayBeStale = true;
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            invalidate();
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            invalidate();
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            invalidate();
+        }
+    }
+}
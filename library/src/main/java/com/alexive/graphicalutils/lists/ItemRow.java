@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import android.view.View;
+import android.widget.ImageButton;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+/**
+ * The views of a list (or grid) item, given to {@link BaseAdapter#bindDataToRow(int, ItemRow)}.
+ * Each item keeps the same ItemRow for its whole life, so binding through it doesn't allocate
+ * anything. Don't keep a reference to it: the item is reused for other indexes.
+ */
+public interface ItemRow {
+
+    /**
+     * @return The item's view.
+     */
+    View getItemView();
+
+    /**
+     * @return The first (top) TextView. Null for grid items without details.
+     */
+    TextView getText1();
+
+    /**
+     * @return The second TextView, if the item has two lines of text. Null otherwise.
+     */
+    TextView getText2();
+
+    /**
+     * @return The avatar (on the left) of a list item, or the image of a grid item. May be
+     * null.
+     */
+    ImageView getImageView();
+
+    /**
+     * @return The item's button (on the right), if it has one. Null otherwise.
+     */
+    ImageButton getButton();
+
+    /**
+     * @return The details view of a grid item (typically under the image), or the divider of
+     * a list item. May be null.
+     */
+    View getDetailsView();
+}
@@ -16,6 +16,11 @@
 
 package com.alexive.graphicalutils.lists;
 
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.view.ViewCompat;
 import android.support.v7.view.ActionMode;
 import android.support.v7.widget.RecyclerView;
 import android.view.Menu;
@@ -29,21 +34,89 @@ import android.widget.ImageView;
 import com.alexive.graphicalutils.R;
 import com.alexive.graphicalutils.view.ViewUtils;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Adapter that contains checkboxes. Handles animations
  */
 public abstract class ListAdapter extends BaseAdapter {
 
+    private static final String STATE_CHECKED_IDS = "ListAdapter.checkedIds";
+    private static final String STATE_CHECKED_IDS_FILE = "ListAdapter.checkedIdsFile";
+    private static final String STATE_ALL_CHECKED = "ListAdapter.allChecked";
+    private static final String STATE_CHECKBOXES_SHOWN = "ListAdapter.checkBoxesShown";
+    private static final String STATE_ACTION_MODE = "ListAdapter.actionMode";
+    /**
+     * Encoded checked ids larger than this are written to a file instead of the Bundle, since
+     * saved states go through a Binder transaction, whose buffer (1MB) is shared by the whole
+     * process.
+     */
+    private static final int MAX_BUNDLE_BYTES = 64 * 1024;
+
     protected AvatarClickListener clickListener;
     protected ListButtonClickListener bttnListener;
-    ArrayList<Long> checkedIds = new ArrayList<>();
+    /**
+     * The checked items' ids or, if allChecked, the unchecked ones, as ranges of consecutive
+     * ids.
+     */
+    LongRangeSet checkedIds = new LongRangeSet();
+    /**
+     * Whether every item is checked, but the ones in checkedIds.
+     */
+    private boolean allChecked = false;
     private ListCheckingActionMode mode;
     private boolean showCheckBoxes;
     private CheckedStateListener listener;
     private boolean disableClickListenerInCheckBoxMode = true;
+    private ListDiffer<?> listDiffer;
+    private PagedList<?> pagedList;
+    /**
+     * True while the adapter itself is changing a checkbox's state, so the change isn't
+     * mistaken for a user's.
+     */
+    private boolean bindingCheckBox;
+    private SelectionChangeListener selectionListener;
+    private final SelectionDelta selectionDelta = new SelectionDelta();
+    private boolean selectionDispatchPending;
+    private RecyclerView recyclerView;
+    private Handler mainHandler;
+    private final Runnable selectionDispatch = new Runnable() {
+        @Override
+        public void run() {
+            dispatchSelectionChange();
+        }
+    };
+    private final LongRangeSet.RangeConsumer checkedRecorder = new LongRangeSet.RangeConsumer() {
+        @Override
+        public void accept(long start, long end) {
+            selectionDelta.record(start, end, true);
+        }
+    };
+    private final LongRangeSet.RangeConsumer uncheckedRecorder =
+            new LongRangeSet.RangeConsumer() {
+                @Override
+                public void accept(long start, long end) {
+                    selectionDelta.record(start, end, false);
+                }
+            };
+    private boolean consecutiveIds = false;
+    private DragSelectTouchListener dragSelector;
+    private KeyProvider<?> keyProvider;
+    /**
+     * Where the checked ids are saved when they don't fit in a Bundle, see
+     * {@link CheckedStateFiles}.
+     */
+    private File stateFile;
+    private IdIndex idIndex;
+    private boolean checkKeyCollisions = false;
 
+    /**
+     * The ids are stable, except for the placeholders of a {@link PagedList}: theirs change to
+     * the items' when a page is loaded (and back when it's dropped), so RecyclerView animates
+     * it as the items being replaced rather than changed.
+     */
     @Override
     protected boolean shouldHaveStableIds() {
         return true;
@@ -57,19 +130,18 @@ public abstract class ListAdapter extends BaseAdapter {
     }
 
     /**
-     * Changes whether or not the checkboxes are visible.
+     * Changes whether or not the checkboxes are visible. The items are notified with a payload
+     * that only swaps the checkboxes and the views beneath them, so they aren't fully bound
+     * again.
      *
-     * @param showCheckBoxes If true, checkboxes will be shown (and the icon hidden) the next
-     *                       time onBindViewHolder is called. false otherwise.
+     * @param showCheckBoxes If true, checkboxes will be shown (and the icon hidden).
+     *                       false otherwise.
      */
     public void setShowCheckBoxes(boolean showCheckBoxes) {
+        if (this.showCheckBoxes == showCheckBoxes)
+            return;
         this.showCheckBoxes = showCheckBoxes;
-//        try {
-        notifyDataSetChanged();
-//        } catch (IllegalStateException ex) {
-        //nasty workaround
-//            ex.printStackTrace();
-//        }
+        notifyItemRangeChanged(getRealAdapterPosition(0), getNumItems(), Payloads.CHECKBOX_MODE);
     }
 
     /**
@@ -88,6 +160,70 @@ public abstract class ListAdapter extends BaseAdapter {
         this.listener = listener;
     }
 
+    /**
+     * Sets a listener that's told which items were checked and unchecked, by the user or by
+     * any of the methods that change the checked items, at most once per frame. Unlike
+     * {@link CheckedStateListener}, checking thousands of items at once (e.g.
+     * {@link #checkAll()}) is a single call.
+     */
+    public void setSelectionChangeListener(SelectionChangeListener listener) {
+        this.selectionListener = listener;
+    }
+
+    public SelectionChangeListener getSelectionChangeListener() {
+        return selectionListener;
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        this.recyclerView = recyclerView;
+        if (dragSelector != null)
+            dragSelector.attachToRecyclerView(recyclerView);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        if (this.recyclerView == recyclerView) {
+            this.recyclerView = null;
+            if (dragSelector != null)
+                dragSelector.attachToRecyclerView(null);
+        }
+    }
+
+    /**
+     * Enables checking a range of items by dragging: once an item is long pressed with the
+     * checkboxes shown, the items between it and the one under the finger get its state, and
+     * the list scrolls by itself while the finger is near its top or bottom edge.
+     * Items without a checkbox ({@link #showCheckboxOnItem(int)}) are skipped.
+     *
+     * @see #startDragSelection(int)
+     */
+    public void setDragSelectionEnabled(boolean enabled) {
+        if (enabled == (dragSelector != null))
+            return;
+        if (enabled) {
+            dragSelector = new DragSelectTouchListener(this);
+            if (recyclerView != null)
+                dragSelector.attachToRecyclerView(recyclerView);
+        } else {
+            dragSelector.attachToRecyclerView(null);
+            dragSelector = null;
+        }
+    }
+
+    /**
+     * Starts a drag selection from the item at index, applying its current checked state to
+     * the items the finger is dragged over, e.g. from the long click listener that starts a
+     * {@link ListCheckingActionMode} and checks the item. Must be called while the finger is
+     * down. Does nothing unless {@link #setDragSelectionEnabled(boolean)} is set.
+     */
+    public void startDragSelection(int index) {
+        if (dragSelector != null)
+            dragSelector.start(index);
+    }
+
     ListCheckingActionMode getMode() {
         return this.mode;
     }
@@ -117,33 +253,418 @@ public abstract class ListAdapter extends BaseAdapter {
 
     /**
      * {@link #checkItem(int, boolean)}
-     * @param notify Whether or not to call {@link #notifyItemChanged(int)} after changing
-     *               the item's state
+     * @param notify Whether or not to call {@link #notifyItemChanged(int, Object)} after
+     *               changing the item's state
      */
     private void checkItem(int index, boolean check, boolean notify) {
         index = getRealAdapterPosition(index);
-        long id = getItemId(index);
-        if (check) {
-            if (checkedIds.indexOf(id) == -1)
-                checkedIds.add(id);
+        setIdChecked(getItemId(index), check);
+        if (notify)
+            notifyItemChanged(index, Payloads.CHECKED);
+    }
+
+    private void setIdChecked(long id, boolean check) {
+        //If every item is checked, the unchecked ones are the ones listed
+        if (check != allChecked ? checkedIds.add(id) : checkedIds.remove(id))
+            onCheckedStateChanged(id, check);
+    }
+
+    /**
+     * Checks/unchecks a range of items. Items that aren't loaded yet (see {@link PagedList})
+     * are skipped. If {@link #hasConsecutiveIds()}, it takes O(log n) whatever the range's
+     * length, otherwise O(count log count).
+     *
+     * @param start Index of the first item
+     * @param count Number of items to check/uncheck
+     * @param check Whether or not you want the items to be checked
+     */
+    public void checkRange(int start, int count, boolean check) {
+        if (count <= 0)
+            return;
+        boolean list = check != allChecked;
+        long changed;
+        if (hasConsecutiveIds()) {
+            //A single range, whatever its length
+            long first = getIdForItem(start);
+            changed = list ?
+                    checkedIds.add(first, first + count - 1, getRecorder(check)) :
+                    checkedIds.remove(first, first + count - 1, getRecorder(check));
         } else {
-            int i = checkedIds.indexOf(id);
-            if (i != -1)
-                checkedIds.remove(i);
+            LongRangeSet ids = getLoadedIds(start, count);
+            changed = list ? checkedIds.addAll(ids, getRecorder(check)) :
+                    checkedIds.removeAll(ids, getRecorder(check));
         }
-        if (notify)
-            notifyItemChanged(index);
+        if (changed != 0)
+            scheduleSelectionDispatch();
+        notifyItemRangeChanged(getRealAdapterPosition(start), count, Payloads.CHECKED);
+    }
+
+    /**
+     * Same as {@link #checkRange(int, int, boolean)}, skipping the items that can't be checked
+     * by the user: subheaders, placeholders and the ones {@link #showCheckboxOnItem(int)}
+     * excludes.
+     */
+    void checkCheckableRange(int start, int count, boolean check) {
+        int runStart = -1;
+        for (int i = start; i <= start + count; i++) {
+            boolean checkable = i < start + count && isCheckable(i);
+            if (checkable && runStart < 0)
+                runStart = i;
+            else if (!checkable && runStart >= 0) {
+                checkRange(runStart, i - runStart, check);
+                runStart = -1;
+            }
+        }
+    }
+
+    boolean isCheckable(int index) {
+        return index >= 0 && index < getNumItems() && isLoaded(index) &&
+                !AwesomeViewTypes.isSubHeader(getItemViewType(getRealAdapterPosition(index))) &&
+                showCheckboxOnItem(index);
+    }
+
+    /**
+     * Whether consecutive items have consecutive ids, that is, getIdForItem(i) + 1 ==
+     * getIdForItem(i + 1) for every i. If so, a range of items is checked without getting each
+     * one's id, in O(log n) whatever the range's length.
+     * By default, what was set with {@link #setHasConsecutiveIds(boolean)}, unless the data is
+     * in a {@link ListDiffer} or a {@link PagedList} or has a {@link KeyProvider}.
+     */
+    protected boolean hasConsecutiveIds() {
+        return consecutiveIds && listDiffer == null && pagedList == null && keyProvider == null;
+    }
+
+    /**
+     * Tells the adapter consecutive items have consecutive ids (see {@link #hasConsecutiveIds()}),
+     * e.g. because {@link #getIdForItem(int)} isn't overridden and returns the positions, or
+     * the items are the rows of a table without gaps, in id order. False by default.
+     */
+    public void setHasConsecutiveIds(boolean consecutiveIds) {
+        this.consecutiveIds = consecutiveIds;
+    }
+
+    /**
+     * Whether {@link #showCheckboxOnItem(int)} returns false for some items. If so,
+     * {@link #checkAll()} and {@link #invertChecked()} go through every loaded item to leave
+     * them unchecked, in O(n); otherwise only the subheaders are left out, in O(subheaders).
+     * Returns false; override it to return true if you override showCheckboxOnItem.
+     */
+    protected boolean hasUncheckableItems() {
+        return false;
+    }
+
+    /**
+     * @return The ids of the loaded items in a range. O(count log count).
+     */
+    private LongRangeSet getLoadedIds(int start, int count) {
+        long[] ids = new long[count];
+        int loaded = 0;
+        for (int i = start; i < start + count; i++)
+            if (isLoaded(i))
+                ids[loaded++] = getIdForItem(i);
+        Arrays.sort(ids, 0, loaded);
+        LongRangeSet set = new LongRangeSet();
+        for (int i = 0; i < loaded; i++)
+            set.addLast(ids[i]);
+        return set;
+    }
+
+    /**
+     * Checks every item in the list that can be checked. The ids aren't listed (so items that
+     * aren't loaded, see {@link PagedList}, are checked too), only the ones that can't be
+     * checked (subheaders, the ones {@link #showCheckboxOnItem(int)} excludes) and the ones
+     * unchecked afterwards are: it takes O(subheaders) once the {@link SectionIndex} is built,
+     * or O(n) if {@link #hasUncheckableItems()}. See {@link #getSelection()}.
+     */
+    public void checkAll() {
+        setCheckedIds(getUncheckableIds(), true);
+        if (getNumItems() > 0)
+            notifyItemRangeChanged(getRealAdapterPosition(0), getNumItems(), Payloads.CHECKED);
+    }
+
+    /**
+     * Checks the items that aren't checked and unchecks the ones that are. Like
+     * {@link #checkAll()}, the items that can't be checked are left unchecked.
+     */
+    public void invertChecked() {
+        int count = getNumItems();
+        if (count == 0)
+            return;
+        //The checked ids become the unchecked ones and vice versa
+        LongRangeSet uncheckable = getUncheckableIds();
+        LongRangeSet ids = new LongRangeSet(checkedIds);
+        if (allChecked)
+            ids.removeAll(uncheckable, null);
+        else
+            ids.addAll(uncheckable, null);
+        setCheckedIds(ids, !allChecked);
+        notifyItemRangeChanged(getRealAdapterPosition(0), count, Payloads.CHECKED);
+    }
+
+    /**
+     * @return The ids of the loaded items that can't be checked: the subheaders and the ones
+     * {@link #showCheckboxOnItem(int)} excludes.
+     */
+    private LongRangeSet getUncheckableIds() {
+        long[] ids;
+        int found = 0;
+        if (!hasUncheckableItems()) {
+            //Only the subheaders, which are already indexed
+            SectionIndex sections = getSectionIndex();
+            ids = new long[sections.getSectionCount()];
+            for (int i = 0; i < ids.length; i++)
+                ids[found++] = getIdForItem(sections.getSectionStartForSection(i));
+        } else {
+            ids = new long[16];
+            for (int i = 0; i < getNumItems(); i++) {
+                if (!isLoaded(i) || isCheckable(i))
+                    continue;
+                if (found == ids.length)
+                    ids = Arrays.copyOf(ids, found * 2);
+                ids[found++] = getIdForItem(i);
+            }
+        }
+        Arrays.sort(ids, 0, found);
+        LongRangeSet set = new LongRangeSet();
+        for (int i = 0; i < found; i++)
+            set.addLast(ids[i]);
+        return set;
     }
 
     /**
      * Whether or not an item at a certain position is checked
      */
     public boolean isChecked(int index) {
-        return checkedIds.contains(getIdForItem(index));
+        return isItemIdChecked(getIdForItem(index));
+    }
+
+    /**
+     * Whether or not the item with a certain id (as returned by {@link #getIdForItem(int)})
+     * is checked. O(1) if no item is listed (none checked, or all of them) or if the items are
+     * looked up in order, as they're bound; O(log ranges of consecutive ids) otherwise.
+     */
+    public boolean isItemIdChecked(long id) {
+        return checkedIds.contains(id) != allChecked;
+    }
+
+    /**
+     * @return The number of checked items. If every item was checked ({@link #checkAll()}),
+     * it's the number of items minus the number of ids that can't be checked or were unchecked
+     * since, so it's only right if those items are still in the list (and, with a
+     * {@link PagedList}, if the subheaders were loaded when the items were checked).
+     */
+    public int getCheckedItemCount() {
+        return allChecked ? Math.max(getNumItems() - checkedIds.size(), 0) : checkedIds.size();
+    }
+
+    /**
+     * @return A copy of the checked items' ids (as returned by {@link #getIdForItem(int)}),
+     * in ascending order. If every item was checked ({@link #checkAll()}) and the ids aren't
+     * consecutive ({@link #hasConsecutiveIds()}), each item's id is read, and the items that
+     * aren't loaded are left out: use {@link #getSelection()} instead.
+     */
+    public long[] getCheckedIds() {
+        if (!allChecked)
+            return checkedIds.toArray();
+        LongRangeSet all = getAllIds();
+        if (all == null)
+            all = getLoadedIds(0, getNumItems());
+        return LongRangeSet.difference(all, checkedIds).toArray();
+    }
+
+    /**
+     * @return The checked items, as of now. Unlike {@link #getCheckedIds()}, if every item was
+     * checked ({@link #checkAll()}) it only lists the ones unchecked since, so it takes
+     * O(1) whatever the number of items.
+     */
+    public Selection getSelection() {
+        return new Selection(new LongRangeSet(checkedIds), allChecked, getCheckedItemCount(),
+                allChecked ? getAllIds() : null);
+    }
+
+    /**
+     * @return The ids of every item, if they're consecutive, null otherwise.
+     */
+    private LongRangeSet getAllIds() {
+        if (!hasConsecutiveIds())
+            return null;
+        LongRangeSet all = new LongRangeSet();
+        if (getNumItems() > 0)
+            all.add(getIdForItem(0), getIdForItem(0) + getNumItems() - 1, null);
+        return all;
     }
 
+    /**
+     * Unchecks all the items. Unlike the other bulk operations, this one doesn't notify the
+     * adapter, so you'll have to do it yourself if the checkboxes are visible.
+     */
     public void uncheckAll() {
+        if (allChecked) {
+            setCheckedIds(new LongRangeSet(), false);
+            return;
+        }
+        if (isTrackingSelection())
+            for (int i = 0; i < checkedIds.getRangeCount(); i++)
+                selectionDelta.record(checkedIds.getStart(i), checkedIds.getEnd(i), false);
         checkedIds.clear();
+        scheduleSelectionDispatch();
+    }
+
+    /**
+     * Same as {@link #saveCheckedState(Context, Bundle, String)}, without a key prefix.
+     */
+    public void saveCheckedState(Context context, Bundle outState) {
+        saveCheckedState(context, outState, "");
+    }
+
+    /**
+     * Saves the checked items (or, after {@link #checkAll()}, the unchecked ones), whether the
+     * checkboxes are shown and whether a {@link ListCheckingActionMode} is active, e.g. in
+     * onSaveInstanceState, so they survive a configuration change or the process being killed.
+     * The ids are saved as runs of consecutive ids, a few bytes each. If they still
+     * take too much for a Bundle (e.g. 100 000 scattered ids) and context isn't null, they're
+     * written to a file in the cache dir, in the background, and only its path is saved. The
+     * adapter always writes to the same file, which is deleted once it's restored.
+     *
+     * @param keyPrefix Put before the keys, so several adapters can save their state in the same
+     *                  Bundle. Pass the same one to {@link #restoreCheckedState(Bundle, String)}
+     */
+    public void saveCheckedState(Context context, Bundle outState, String keyPrefix) {
+        byte[] encoded = CheckedIdsCodec.encode(checkedIds);
+        if (encoded.length > MAX_BUNDLE_BYTES && context != null) {
+            if (stateFile == null)
+                stateFile = CheckedStateFiles.newFile(context);
+            CheckedStateFiles.write(stateFile, encoded);
+            outState.putString(keyPrefix + STATE_CHECKED_IDS_FILE, stateFile.getPath());
+        } else {
+            outState.putByteArray(keyPrefix + STATE_CHECKED_IDS, encoded);
+            //The file saved before isn't needed anymore
+            if (stateFile != null)
+                CheckedStateFiles.delete(stateFile);
+        }
+        outState.putBoolean(keyPrefix + STATE_ALL_CHECKED, allChecked);
+        outState.putBoolean(keyPrefix + STATE_CHECKBOXES_SHOWN, showCheckBoxes);
+        outState.putBoolean(keyPrefix + STATE_ACTION_MODE, mode != null);
+    }
+
+    /**
+     * Same as {@link #restoreCheckedState(Bundle, String)}, without a key prefix.
+     */
+    public boolean restoreCheckedState(Bundle savedState) {
+        return restoreCheckedState(savedState, "");
+    }
+
+    /**
+     * Restores what {@link #saveCheckedState(Context, Bundle, String)} saved, replacing the
+     * checked items, in O(runs of consecutive ids). The ids don't depend on the data being
+     * loaded, so it can be called before it is. If the ids were saved to a file, it's deleted,
+     * so the state can only be restored once.
+     *
+     * @param keyPrefix The one the state was saved with
+     * @return Whether a {@link ListCheckingActionMode} was active when the state was saved. If
+     * so, start it again (e.g. {@code startSupportActionMode(new MyActionMode(recyclerView))}):
+     * it shows the checkboxes and its title with the restored items. If it isn't restarted,
+     * the items stay checked, without the checkboxes shown.
+     */
+    public boolean restoreCheckedState(Bundle savedState, String keyPrefix) {
+        if (savedState == null)
+            return false;
+        byte[] encoded = savedState.getByteArray(keyPrefix + STATE_CHECKED_IDS);
+        String path = savedState.getString(keyPrefix + STATE_CHECKED_IDS_FILE);
+        File file = encoded == null && path != null ? new File(path) : null;
+        if (file != null)
+            encoded = CheckedStateFiles.read(file);
+        if (encoded == null)
+            return false;
+        try {
+            setCheckedIds(CheckedIdsCodec.decode(encoded),
+                    savedState.getBoolean(keyPrefix + STATE_ALL_CHECKED));
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+        if (file != null) {
+            CheckedStateFiles.delete(file);
+            //Saved again to the same file, rather than leaving one behind for each restore
+            stateFile = file;
+        }
+        boolean savedActionMode = savedState.getBoolean(keyPrefix + STATE_ACTION_MODE);
+        boolean actionMode = savedActionMode && (allChecked || !checkedIds.isEmpty());
+        //The action mode shows the checkboxes itself when it's started
+        showCheckBoxes = savedState.getBoolean(keyPrefix + STATE_CHECKBOXES_SHOWN) &&
+                !savedActionMode;
+        if (getNumItems() > 0)
+            notifyItemRangeChanged(getRealAdapterPosition(0), getNumItems(), Payloads.CHECKED);
+        return actionMode;
+    }
+
+    /**
+     * Replaces the checked items, recording the difference.
+     *
+     * @param allChecked If true, ids are the unchecked items' ids and every other one is
+     *                   checked.
+     */
+    private void setCheckedIds(LongRangeSet ids, boolean allChecked) {
+        if (isTrackingSelection()) {
+            if (allChecked != this.allChecked)
+                //Every item may have changed, they aren't listed
+                selectionDelta.recordReset();
+            else {
+                LongRangeSet.RangeConsumer listed = allChecked ? uncheckedRecorder :
+                        checkedRecorder;
+                LongRangeSet.RangeConsumer unlisted = allChecked ? checkedRecorder :
+                        uncheckedRecorder;
+                LongRangeSet.forEachDifference(checkedIds, ids, unlisted);
+                LongRangeSet.forEachDifference(ids, checkedIds, listed);
+            }
+        }
+        checkedIds = ids;
+        this.allChecked = allChecked;
+        scheduleSelectionDispatch();
+    }
+
+    /**
+     * Whether anyone wants to know which items changed, not just that some did.
+     */
+    private boolean isTrackingSelection() {
+        return selectionListener != null || mode != null;
+    }
+
+    private void onCheckedStateChanged(long id, boolean checked) {
+        if (isTrackingSelection())
+            selectionDelta.record(id, id, checked);
+        scheduleSelectionDispatch();
+    }
+
+    private LongRangeSet.RangeConsumer getRecorder(boolean checked) {
+        if (!isTrackingSelection())
+            return null;
+        return checked ? checkedRecorder : uncheckedRecorder;
+    }
+
+    /**
+     * Calls the {@link SelectionChangeListener} and updates the action mode on the next frame,
+     * however many items change until then.
+     */
+    private void scheduleSelectionDispatch() {
+        if (selectionDispatchPending || !isTrackingSelection())
+            return;
+        selectionDispatchPending = true;
+        if (recyclerView != null)
+            ViewCompat.postOnAnimation(recyclerView, selectionDispatch);
+        else {
+            if (mainHandler == null)
+                mainHandler = new Handler(Looper.getMainLooper());
+            mainHandler.post(selectionDispatch);
+        }
+    }
+
+    private void dispatchSelectionChange() {
+        selectionDispatchPending = false;
+        selectionDelta.publish();
+        if (selectionListener != null && !selectionDelta.isEmpty())
+            selectionListener.onSelectionChanged(this, selectionDelta);
+        if (mode != null)
+            mode.onSelectionDispatched(selectionDelta);
     }
 
     @Override
@@ -163,23 +684,155 @@ public abstract class ListAdapter extends BaseAdapter {
      * {@link android.support.v7.widget.RecyclerView.Adapter#getItemId(int)} since the default
      * implementation just returns the item's position. So, if the data changes, items that were not
      * checked before may be checked and vice-versa.
+     * If the adapter's data is held by a {@link ListDiffer} or a {@link PagedList}, the ids it
+     * provides are used. Otherwise, if there's a {@link KeyProvider}, the ids are its keys'
+     * {@link StableIds#hash(Object)}.
      */
     public long getIdForItem(int position) {
+        if (listDiffer != null)
+            return listDiffer.getItemId(position);
+        if (pagedList != null)
+            return pagedList.getItemId(position);
+        if (keyProvider != null)
+            return StableIds.hash(keyProvider.getKey(position));
         return position;
     }
 
+    /**
+     * Sets where the items' keys come from, so their ids are stable, without overriding
+     * {@link #getIdForItem(int)}: each id is its key's {@link StableIds#hash(Object)}.
+     * Items can then be found by their key, see {@link #getIndexForKey(Object)}.
+     */
+    public void setKeyProvider(KeyProvider<?> provider) {
+        this.keyProvider = provider;
+        if (idIndex != null)
+            idIndex.invalidate();
+    }
+
+    public KeyProvider<?> getKeyProvider() {
+        return keyProvider;
+    }
+
+    /**
+     * Makes sure no two items have the same id: whenever the items change, every item's id is
+     * read and, if two are the same (two keys with the same hash, or the same key twice), an
+     * IllegalStateException is thrown. It takes O(n) per change, so only enable it in debug
+     * builds, e.g. {@code setKeyCollisionCheckEnabled(BuildConfig.DEBUG)}.
+     */
+    public void setKeyCollisionCheckEnabled(boolean enabled) {
+        checkKeyCollisions = enabled;
+        if (enabled)
+            getIdIndex().build();
+    }
+
+    public boolean isKeyCollisionCheckEnabled() {
+        return checkKeyCollisions;
+    }
+
+    /**
+     * Called by the {@link IdIndex} when two items have the same id.
+     */
+    void onDuplicateId(int first, int second) {
+        long id = getIdForItem(second);
+        if (keyProvider == null)
+            throw new IllegalStateException("Items " + first + " and " + second +
+                    " have the same id: " + id);
+        Object firstKey = keyProvider.getKey(first);
+        Object secondKey = keyProvider.getKey(second);
+        if (firstKey == null ? secondKey == null : firstKey.equals(secondKey))
+            throw new IllegalStateException("Items " + first + " and " + second +
+                    " have the same key: " + firstKey);
+        throw new IllegalStateException("Keys " + firstKey + " and " + secondKey + " (items " +
+                first + " and " + second + ") have the same id: " + id);
+    }
+
+    private IdIndex getIdIndex() {
+        if (idIndex == null)
+            idIndex = new IdIndex(this);
+        return idIndex;
+    }
+
+    /**
+     * @return The index of the item with that id (as returned by {@link #getIdForItem(int)}),
+     * or -1 if there's none. O(1), once the index of the items by id is built (in O(n), the
+     * first time and after items are inserted, removed or moved).
+     */
+    public int getIndexForId(long id) {
+        return getIdIndex().indexOf(id);
+    }
+
+    /**
+     * @return The index of the item with that key, or -1 if there's none. See
+     * {@link #getIndexForId(long)}. The item's id must be the key's
+     * {@link StableIds#hash(Object)}, as it is with a {@link KeyProvider}.
+     */
+    public int getIndexForKey(Object key) {
+        return getIndexForId(StableIds.hash(key));
+    }
+
+    /**
+     * Same as {@link #notifyItemChanged(int)}, for the item with that key. Does nothing if
+     * there's none.
+     */
+    public void notifyItemChangedByKey(Object key) {
+        int index = getIndexForKey(key);
+        if (index >= 0)
+            notifyItemChanged(getRealAdapterPosition(index));
+    }
+
+    /**
+     * Checks/unchecks the item with that key. Items are checked by id, so it works even if the
+     * item isn't in the list (yet).
+     */
+    public void checkItemByKey(Object key, boolean check) {
+        long id = StableIds.hash(key);
+        setIdChecked(id, check);
+        int index = getIndexForId(id);
+        if (index >= 0)
+            notifyItemChanged(getRealAdapterPosition(index), Payloads.CHECKED);
+    }
+
+    /**
+     * Whether or not the item with that key is checked.
+     */
+    public boolean isKeyChecked(Object key) {
+        return isItemIdChecked(StableIds.hash(key));
+    }
+
+    void setListDiffer(ListDiffer<?> differ) {
+        this.listDiffer = differ;
+    }
+
+    void setPagedList(PagedList<?> pagedList) {
+        this.pagedList = pagedList;
+    }
+
+    /**
+     * @return The RecyclerView this adapter is attached to, or null.
+     */
+    RecyclerView getRecyclerView() {
+        return recyclerView;
+    }
+
+    /**
+     * Items of a {@link PagedList} that aren't loaded are shown as placeholders.
+     */
+    @Override
+    protected boolean isPlaceholder(int index) {
+        return pagedList != null && pagedList.get(index) == null;
+    }
+
+    @Override
+    boolean isLoaded(int index) {
+        return pagedList == null || pagedList.isLoaded(index);
+    }
+
     @Override
     public AwesomeViewHolder onCreateViewHolder(ViewGroup viewGroup, int i) {
         AwesomeViewHolder avh = super.onCreateViewHolder(viewGroup, i);
-        if (avh.left != null)
-            avh.left.setOnClickListener(getListenerForAvatar(avh));
-
-        if (avh.button != null)
-            avh.button.setOnClickListener(new ButtonListener(avh));
+        setItemViewsListeners(avh);
 
         if (avh.checkBox != null) {
-            avh.checkBox.setOnCheckedChangeListener(
-                    new CheckBoxChangeListenerWrapper(this, avh));
             ListItemType type = ListItemType.findTypeByResId(i);
             View v;
             if (type.beneathCheckBoxId == R.id.imageView)
@@ -199,16 +852,89 @@ public abstract class ListAdapter extends BaseAdapter {
         return avh;
     }
 
+    private void setItemViewsListeners(AwesomeViewHolder avh) {
+        if (avh.left != null)
+            avh.left.setOnClickListener(getListenerForAvatar(avh));
+
+        if (avh.button != null)
+            avh.button.setOnClickListener(dispatcher);
+
+        if (avh.checkBox != null)
+            avh.checkBox.setOnCheckedChangeListener(dispatcher);
+    }
+
+    @Override
+    void dispatchClick(View view, AwesomeViewHolder avh) {
+        if (view == avh.left) {
+            if (clickListener != null && getMode() == null)
+                clickListener.onAvatarClick((ImageView) view,
+                        getAdapterPositionForViewHolder(avh));
+        } else if (view == avh.button) {
+            if (bttnListener != null)
+                bttnListener.onButtonClick((ImageButton) view,
+                        getAdapterPositionForViewHolder(avh));
+        } else
+            super.dispatchClick(view, avh);
+    }
+
+    @Override
+    void dispatchCheckedChange(AwesomeViewHolder avh, boolean isChecked) {
+        if (bindingCheckBox)
+            return;
+        int index = getAdapterPositionForViewHolder(avh);
+        long id = getIdForItem(index);
+        checkItem(index, isChecked, false);
+        if (mode != null) {
+            mode.onItemChecked(id, isChecked);
+            if (disableClickListenerInCheckBoxMode)
+                return;
+        }
+        if (listener != null)
+            listener.onItemChecked(id, isChecked);
+    }
+
+    @Override
+    void adoptHolder(AwesomeViewHolder avh) {
+        super.adoptHolder(avh);
+        if (!AwesomeViewTypes.isSubHeader(avh.getItemViewType()))
+            setItemViewsListeners(avh);
+        //The checkbox's visibility is set by the bind that follows
+    }
+
+    @Override
+    public void onBindViewHolder(AwesomeViewHolder awesomeViewHolder, int i,
+                                 List<Object> payloads) {
+        if (payloads.isEmpty() || !Payloads.onlyCheckBoxPayloads(payloads)) {
+            super.onBindViewHolder(awesomeViewHolder, i, payloads);
+            return;
+        }
+        int ii = i - getRealAdapterPosition(0);
+        if (ii >= 0)
+            bindCheckBox(awesomeViewHolder, ii);
+    }
+
     @Override
     public void onBindViewHolder(AwesomeViewHolder awesomeViewHolder, int i) {
-        int ii = getAdapterPositionForViewHolder(awesomeViewHolder);
+        int ii = i - getRealAdapterPosition(0);
         super.onBindViewHolder(awesomeViewHolder, i);
         if (ii < 0) //In this case, I is the headerview
             return;
-        if (getListItemDataType(ii) == ListItemType.SUB_HEADER)
+        bindCheckBox(awesomeViewHolder, ii);
+    }
+
+    /**
+     * Shows/hides the checkbox of a list item, according to {@link #areCheckBoxesShown()}.
+     * Visibilities are swapped between VISIBLE and INVISIBLE so the item doesn't need to be
+     * measured again.
+     */
+    private void bindCheckBox(AwesomeViewHolder awesomeViewHolder, int ii) {
+        if (awesomeViewHolder.checkBox == null)
+            return;
+        ListItemType type = getCachedListItemType(ii);
+        if (type == ListItemType.SUB_HEADER)
             return;
         View v; //The view that is below the checkbox
-        if (getListItemDataType(ii).beneathCheckBoxId == R.id.imageView) {
+        if (type.beneathCheckBoxId == R.id.imageView) {
             v = awesomeViewHolder.left;
         } else
             v = awesomeViewHolder.button;
@@ -216,26 +942,24 @@ public abstract class ListAdapter extends BaseAdapter {
         if (v == null) {
             return;
         }
-        if (awesomeViewHolder.checkBox == null) {
-            return;
-        }
-        if (areCheckBoxesShown() && showCheckboxOnItem(ii)) {
+        if (areCheckBoxesShown() && showCheckboxOnItem(ii) && isLoaded(ii)) {
             //Alright, show the checkbox
             ViewUtils.animateSetViewVisibilityVisible(awesomeViewHolder.checkBox);
-            awesomeViewHolder.checkBox.setChecked(isChecked(
-                    getAdapterPositionForViewHolder(awesomeViewHolder)));
-            ViewUtils.animateSetViewVisibilityGone(v);
+            bindingCheckBox = true;
+            awesomeViewHolder.checkBox.setChecked(isChecked(ii));
+            bindingCheckBox = false;
+            ViewUtils.animateSetViewVisibilityInvisible(v);
         } else {
             //Hide it
-            ViewUtils.animateSetViewVisibilityGone(awesomeViewHolder.checkBox);
+            ViewUtils.animateSetViewVisibilityInvisible(awesomeViewHolder.checkBox);
             ViewUtils.animateSetViewVisibilityVisible(v);
         }
-
     }
 
     /**
      * Whether or not a certain item should have a checkbox displayed when in checking mode.
-     * Default implementation always returns true;
+     * Default implementation always returns true; if you override it, override
+     * {@link #hasUncheckableItems()} too.
      */
     public boolean showCheckboxOnItem(int position) {
         return true;
@@ -260,7 +984,7 @@ public abstract class ListAdapter extends BaseAdapter {
     @Override
     protected void handleClick(AwesomeViewHolder avh) {
         if (areCheckBoxesShown() && disableClickListenerInCheckBoxMode) {
-            if (avh.checkBox != null) {
+            if (avh.checkBox != null && isLoaded(getAdapterPositionForViewHolder(avh))) {
                 boolean check = !isChecked(getAdapterPositionForViewHolder(avh));
                 checkItem(getAdapterPositionForViewHolder(avh), check, false);
                 avh.checkBox.setChecked(check);
@@ -272,10 +996,11 @@ public abstract class ListAdapter extends BaseAdapter {
     @Override
     protected boolean handleLongClick(AwesomeViewHolder avh) {
         if (areCheckBoxesShown() && disableClickListenerInCheckBoxMode) {
-            if (avh.checkBox != null) {
+            if (avh.checkBox != null && isLoaded(getAdapterPositionForViewHolder(avh))) {
                 boolean check = !isChecked(getAdapterPositionForViewHolder(avh));
                 checkItem(getAdapterPositionForViewHolder(avh), check, false);
                 avh.checkBox.setChecked(check);
+                startDragSelection(getAdapterPositionForViewHolder(avh));
             }
             return true;
         } else
@@ -291,7 +1016,7 @@ public abstract class ListAdapter extends BaseAdapter {
     //AVATAR RELATED STUFF HERE
 
     protected View.OnClickListener getListenerForAvatar(AwesomeViewHolder avh) {
-        return new AvatarListener(avh);
+        return dispatcher;
     }
 
     public void setButtonOnClickListener(ListButtonClickListener listener) {
@@ -301,7 +1026,7 @@ public abstract class ListAdapter extends BaseAdapter {
     /**
      * Handles a check/uncheck.
      */
-    interface CheckedStateListener {
+    public interface CheckedStateListener {
         /**
          * Called when the checkbox's state changed.
          *
@@ -312,6 +1037,28 @@ public abstract class ListAdapter extends BaseAdapter {
         void onItemChecked(long itemId, boolean checked);
     }
 
+    /**
+     * Gives each item a key that identifies it (e.g. a String or a UUID from your database),
+     * see {@link #setKeyProvider(KeyProvider)}.
+     */
+    public interface KeyProvider<K> {
+        /**
+         * @return The key of the item at index. Two items must never have the same key.
+         */
+        K getKey(int index);
+    }
+
+    /**
+     * Told which items were checked and unchecked, at most once per frame.
+     * See {@link #setSelectionChangeListener(SelectionChangeListener)}.
+     */
+    public interface SelectionChangeListener {
+        /**
+         * @param delta What changed since the last call. It's reused, don't keep it.
+         */
+        void onSelectionChanged(ListAdapter adapter, SelectionDelta delta);
+    }
+
     public interface AvatarClickListener {
         void onAvatarClick(ImageView avatar, int index);
     }
@@ -332,6 +1079,11 @@ public abstract class ListAdapter extends BaseAdapter {
 
 //BUTTON RELATED STUFF HERE
 
+    /**
+     * @deprecated The adapter listens to all the checkboxes itself, it doesn't create one of
+     * these per holder anymore.
+     */
+    @Deprecated
     protected static class CheckBoxChangeListenerWrapper implements CompoundButton.OnCheckedChangeListener {
 
         protected AwesomeViewHolder vh;
@@ -345,16 +1097,7 @@ public abstract class ListAdapter extends BaseAdapter {
 
         @Override
         public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
-            int index = adapter.getAdapterPositionForViewHolder(vh);
-            long id = adapter.getIdForItem(index);
-            adapter.checkItem(index, isChecked, false);
-            if (adapter.getMode() != null) {
-                adapter.mode.onItemChecked(id, isChecked);
-                if (adapter.disableClickListenerInCheckBoxMode)
-                    return;
-            }
-            if (adapter.getListener() != null)
-                adapter.getListener().onItemChecked(id, isChecked);
+            adapter.dispatchCheckedChange(vh, isChecked);
         }
     }
 
@@ -362,11 +1105,14 @@ public abstract class ListAdapter extends BaseAdapter {
      * ActionMode class that, when it is started, makes all the Checkboxes visible.
      * You should only use this class if your adapter, before instantiating this,
      * DOES NOT HAVE THE CHECKBOXES VISIBLE.
+     * The title (the number of checked items) is updated, and the mode finished when no item
+     * is left checked, at most once per frame.
      */
     public abstract static class ListCheckingActionMode implements ActionMode.Callback {
 
         protected ListAdapter listAdapter;
         private ActionMode mode;
+        private int titleCount = -1;
 
         public ListCheckingActionMode(RecyclerView recyclerView) {
             if (recyclerView.getAdapter() instanceof ListAdapter) {
@@ -382,8 +1128,8 @@ public abstract class ListAdapter extends BaseAdapter {
         @Override
         public final boolean onCreateActionMode(ActionMode mode, Menu menu) {
             this.mode = mode;
+            titleCount = -1;
             listAdapter.setShowCheckBoxes(true);
-            listAdapter.notifyDataSetChanged();
             listAdapter.setMode(this);
             updateTitle();
             return true;
@@ -402,14 +1148,38 @@ public abstract class ListAdapter extends BaseAdapter {
             listAdapter.setMode(null);
         }
 
+        void onSelectionDispatched(SelectionDelta delta) {
+            if (listAdapter.getCheckedItemCount() == 0) {
+                mode.finish();
+                return;
+            }
+            updateTitle();
+            if (!delta.isEmpty())
+                onSelectionChanged(delta);
+        }
+
+        /**
+         * Called once per frame in which the checked items changed, with what changed. The
+         * title is already updated. The default implementation does nothing.
+         *
+         * @param delta It's reused, don't keep it.
+         */
+        public void onSelectionChanged(SelectionDelta delta) {
+        }
+
         private void updateTitle() {
-            mode.setTitle(listAdapter.checkedIds.size() + " item(s) selected");
+            int count = listAdapter.getCheckedItemCount();
+            if (count == titleCount)
+                return;
+            titleCount = count;
+            mode.setTitle(count + " item(s) selected");
         }
 
+        /**
+         * Called when the user checks/unchecks an item. The title is updated on the next
+         * frame, see {@link #onSelectionChanged(SelectionDelta)}.
+         */
         public void onItemChecked(long id, boolean checked) {
-            if (listAdapter.checkedIds.size() == 0)
-                mode.finish();
-            updateTitle();
             onListItemCheckedStateChange(id, checked);
         }
 
@@ -420,33 +1190,4 @@ public abstract class ListAdapter extends BaseAdapter {
 
     }
 
-    private class AvatarListener implements View.OnClickListener {
-
-        private AwesomeViewHolder avh;
-
-        public AvatarListener(AwesomeViewHolder avh) {
-            this.avh = avh;
-        }
-
-        @Override
-        public void onClick(View v) {
-            if (clickListener != null && getMode() == null)
-                clickListener.onAvatarClick((ImageView) v, getAdapterPositionForViewHolder(avh));
-        }
-    }
-
-    class ButtonListener implements View.OnClickListener {
-
-        protected AwesomeViewHolder avw;
-
-        public ButtonListener(AwesomeViewHolder vh) {
-            avw = vh;
-        }
-
-        @Override
-        public void onClick(View v) {
-            if (bttnListener != null)
-                bttnListener.onButtonClick((ImageButton) v, getAdapterPositionForViewHolder(avw));
-        }
-    }
 }
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Holds the data shown by a {@link ListAdapter} (or {@link GridAdapter}) and updates it with
+ * {@link #submitList(List)}: the old and new snapshots are diffed on a background thread and
+ * the adapter gets the minimal notifyItemRange* calls, instead of a notifyDataSetChanged.
+ * <p>
+ * Create it in your adapter and read the data from it:
+ * <pre>
+ * differ = new ListDiffer&lt;&gt;(this, callback);
+ * ...
+ * public int getNumItems() { return differ.size(); }
+ * </pre>
+ * While a differ is attached, {@link ListAdapter#getIdForItem(int)} returns the ids given by
+ * {@link ItemCallback#getIdForItem(Object)}.
+ * <p>
+ * Don't change a list after submitting it, the differ keeps a reference to it.
+ */
+public class ListDiffer<T> {
+
+    private static ExecutorService defaultExecutor;
+
+    private final ListAdapter adapter;
+    private final ItemCallback<T> callback;
+    private final Executor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private List<T> list = Collections.emptyList();
+    private int generation;
+    /**
+     * Same as generation, read by the diffing thread to bail out of stale diffs.
+     */
+    private volatile int latestGeneration;
+
+    public ListDiffer(ListAdapter adapter, ItemCallback<T> callback) {
+        this(adapter, callback, getDefaultExecutor());
+    }
+
+    /**
+     * @param executor Where the diffs are computed.
+     */
+    public ListDiffer(ListAdapter adapter, ItemCallback<T> callback, Executor executor) {
+        this.adapter = adapter;
+        this.callback = callback;
+        this.executor = executor;
+        adapter.setListDiffer(this);
+    }
+
+    private static synchronized ExecutorService getDefaultExecutor() {
+        if (defaultExecutor == null)
+            defaultExecutor = Executors.newSingleThreadExecutor();
+        return defaultExecutor;
+    }
+
+    /**
+     * @return The current snapshot. Don't modify it.
+     */
+    public List<T> getCurrentList() {
+        return list;
+    }
+
+    public T getItem(int index) {
+        return list.get(index);
+    }
+
+    public int size() {
+        return list.size();
+    }
+
+    long getItemId(int index) {
+        return callback.getIdForItem(list.get(index));
+    }
+
+    /**
+     * Replaces the current snapshot. Must be called from the main thread.
+     * If another list is submitted before the diff of this one finishes, this one is dropped.
+     *
+     * @param newList The new snapshot, or null to clear the list.
+     */
+    public void submitList(final List<T> newList) {
+        final int runGeneration = ++generation;
+        latestGeneration = runGeneration;
+        if (newList == list)
+            return;
+        final List<T> oldList = list;
+        int offset = adapter.getRealAdapterPosition(0);
+        if (newList == null || newList.isEmpty()) {
+            list = newList == null ? Collections.<T>emptyList() : newList;
+            if (!oldList.isEmpty())
+                adapter.notifyItemRangeRemoved(offset, oldList.size());
+            return;
+        }
+        if (oldList.isEmpty()) {
+            list = newList;
+            adapter.notifyItemRangeInserted(offset, newList.size());
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult result;
+                try {
+                    result = DiffUtil.calculateDiff(
+                            new SnapshotCallback(oldList, newList, runGeneration));
+                } catch (DiffCancelledException ex) {
+                    return;
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (runGeneration != generation)
+                            return;
+                        list = newList;
+                        result.dispatchUpdatesTo(new OffsetUpdateCallback());
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Tells the differ how to compare the items in two snapshots.
+     */
+    public interface ItemCallback<T> {
+        /**
+         * @return A stable id for this item, the same as you'd return in
+         * {@link ListAdapter#getIdForItem(int)}. Two items with the same id are the same item
+         * (maybe with different contents). If the items have a String or UUID key, use
+         * {@link StableIds#hash(Object)}.
+         */
+        long getIdForItem(T item);
+
+        /**
+         * Called only for items with the same id.
+         *
+         * @return true if the item would be displayed the same way, so it doesn't need to be
+         * bound again.
+         */
+        boolean areContentsTheSame(T oldItem, T newItem);
+    }
+
+    private static class DiffCancelledException extends RuntimeException {
+
+        static final DiffCancelledException INSTANCE = new DiffCancelledException();
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private class SnapshotCallback extends DiffUtil.Callback {
+
+        private final List<T> oldList;
+        private final List<T> newList;
+        private final int runGeneration;
+
+        SnapshotCallback(List<T> oldList, List<T> newList, int runGeneration) {
+            this.oldList = oldList;
+            this.newList = newList;
+            this.runGeneration = runGeneration;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            if (runGeneration != latestGeneration)
+                throw DiffCancelledException.INSTANCE;
+            return callback.getIdForItem(oldList.get(oldItemPosition)) ==
+                    callback.getIdForItem(newList.get(newItemPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return callback.areContentsTheSame(oldList.get(oldItemPosition),
+                    newList.get(newItemPosition));
+        }
+    }
+
+    /**
+     * Shifts the diff's positions by the header view, if there's one.
+     */
+    private class OffsetUpdateCallback implements ListUpdateCallback {
+
+        @Override
+        public void onInserted(int position, int count) {
+            adapter.notifyItemRangeInserted(adapter.getRealAdapterPosition(position), count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            adapter.notifyItemRangeRemoved(adapter.getRealAdapterPosition(position), count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            adapter.notifyItemMoved(adapter.getRealAdapterPosition(fromPosition),
+                    adapter.getRealAdapterPosition(toPosition));
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            adapter.notifyItemRangeChanged(adapter.getRealAdapterPosition(position), count,
+                    payload);
+        }
+    }
+}
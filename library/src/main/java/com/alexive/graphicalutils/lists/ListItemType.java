@@ -16,6 +16,8 @@
 
 package com.alexive.graphicalutils.lists;
 
+import android.util.SparseArray;
+
 import com.alexive.graphicalutils.R;
 
 /**
@@ -72,10 +74,17 @@ public enum ListItemType {
         this.beneathCheckBoxId = beneathCheckBoxId;
     }
 
+    /**
+     * The types by resId, so finding a type by its resId doesn't need to scan values().
+     */
+    private static final SparseArray<ListItemType> TYPES_BY_RES_ID = new SparseArray<>();
+
+    static {
+        for (ListItemType val : values())
+            TYPES_BY_RES_ID.put(val.resId, val);
+    }
+
     protected static ListItemType findTypeByResId(int resId){
-        for (ListItemType val : ListItemType.values())
-            if (val.resId == resId)
-                return val;
-        return null;
+        return TYPES_BY_RES_ID.get(resId);
     }
 }
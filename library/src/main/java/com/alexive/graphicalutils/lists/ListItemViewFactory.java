@@ -0,0 +1,230 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.TypedArray;
+import android.graphics.drawable.Drawable;
+import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.CheckBox;
+import android.widget.ImageButton;
+import android.widget.ImageView;
+import android.widget.LinearLayout;
+import android.widget.RelativeLayout;
+import android.widget.TextView;
+
+import com.alexive.graphicalutils.R;
+import com.alexive.graphicalutils.view.AvatarRowLayout;
+import com.alexive.graphicalutils.view.ViewUtils;
+
+/**
+ * Builds the list items' views in code, with the same metrics as the XML layouts
+ * ({@link ListItemType}'s resIds and the subheader layouts), and creates their holders
+ * without inflating anything or looking views up by id.
+ * See {@link BaseAdapter#setBuildItemViewsInCode(boolean)}.
+ */
+final class ListItemViewFactory {
+
+    private ListItemViewFactory() {
+    }
+
+    /**
+     * @param type        Any type but {@link ListItemType#GRID_ITEM} and
+     *                    {@link ListItemType#SUB_HEADER}.
+     * @param withDivider Whether the item has a divider view (it doesn't if the dividers are
+     *                    drawn by a {@link DividerDecoration})
+     */
+    static AwesomeViewHolder createListItem(ViewGroup parent, ListItemType type,
+                                            boolean withDivider) {
+        Context c = parent.getContext();
+        boolean twoLines = type == ListItemType.TWO_TEXTS ||
+                type == ListItemType.TWO_TEXTS_AND_AVATAR ||
+                type == ListItemType.TWO_TEXTS_WITH_AVATAR_AND_BUTTON;
+        if (type.beneathCheckBoxId != 0)
+            return createAvatarListItem(c, twoLines,
+                    type.beneathCheckBoxId == R.id.imageButton, withDivider);
+
+        RelativeLayout root = new RelativeLayout(c);
+        root.setLayoutParams(new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                dp(c, type == ListItemType.SINGLE_TEXT ? 48 : 72)));
+        ViewUtils.setBackgroundDrawable(root, getThemeDrawable(c, R.attr.selectableItemBackground));
+
+        //The single text layout uses margins and the theme's text color, the two texts one
+        //uses padding and sets the colors
+        TextView text1 = createTextView(c, android.R.id.text1, 16,
+                twoLines ? android.R.attr.textColorPrimary : 0);
+        RelativeLayout.LayoutParams text1Params = new RelativeLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        if (twoLines)
+            text1.setPadding(dp(c, 16), dp(c, 20), dp(c, 16), 0);
+        else
+            text1Params.setMargins(dp(c, 16), dp(c, 16), dp(c, 16), 0);
+        root.addView(text1, text1Params);
+
+        TextView text2 = null;
+        if (twoLines) {
+            text2 = createTextView(c, android.R.id.text2, 14, android.R.attr.textColorSecondary);
+            text2.setPadding(dp(c, 16), 0, dp(c, 16), 0);
+            RelativeLayout.LayoutParams text2Params = new RelativeLayout.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+            text2Params.addRule(RelativeLayout.BELOW, android.R.id.text1);
+            root.addView(text2, text2Params);
+        }
+
+        View divider = null;
+        if (withDivider) {
+            divider = createDivider(c);
+            RelativeLayout.LayoutParams dividerParams = new RelativeLayout.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, dp(c, 1));
+            dividerParams.addRule(RelativeLayout.ALIGN_PARENT_BOTTOM);
+            root.addView(divider, dividerParams);
+        }
+
+        return new AwesomeViewHolder(root, text1, text2, null, null, null, divider);
+    }
+
+    /**
+     * The avatar types are laid out by an {@link AvatarRowLayout}, same as their XML layouts.
+     */
+    private static AwesomeViewHolder createAvatarListItem(Context c, boolean twoLines,
+                                                          boolean hasButton,
+                                                          boolean withDivider) {
+        AvatarRowLayout root = new AvatarRowLayout(c);
+        root.setLayoutParams(new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                dp(c, twoLines ? 72 : 56)));
+        ViewUtils.setBackgroundDrawable(root, getThemeDrawable(c, R.attr.selectableItemBackground));
+        root.setClickable(true);
+
+        ImageView avatar = new ImageView(c);
+        avatar.setId(R.id.imageView);
+        avatar.setScaleType(ImageView.ScaleType.FIT_CENTER);
+        root.addView(avatar, new ViewGroup.MarginLayoutParams(dp(c, 38), dp(c, 38)));
+
+        ImageButton button = null;
+        if (hasButton) {
+            button = new ImageButton(c);
+            button.setId(R.id.imageButton);
+            ViewUtils.setBackgroundDrawable(button,
+                    getThemeDrawable(c, R.attr.selectableItemBackgroundBorderless));
+            root.addView(button, wrapContent());
+        }
+
+        CheckBox checkBox = new CheckBox(c);
+        checkBox.setId(R.id.checkBox);
+        //Only the layouts without a button hide it
+        if (!hasButton)
+            checkBox.setVisibility(View.INVISIBLE);
+        root.addView(checkBox, wrapContent());
+
+        TextView text1 = createTextView(c, android.R.id.text1, 16,
+                android.R.attr.textColorPrimary);
+        root.addView(text1, wrapContent());
+        TextView text2 = null;
+        if (twoLines) {
+            text2 = createTextView(c, android.R.id.text2, 14, android.R.attr.textColorSecondary);
+            root.addView(text2, wrapContent());
+        }
+
+        View divider = null;
+        if (withDivider) {
+            divider = createDivider(c);
+            root.addView(divider, new ViewGroup.MarginLayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, dp(c, 1)));
+        }
+
+        return new AwesomeViewHolder(root, text1, text2, avatar, button, checkBox, divider);
+    }
+
+    private static ViewGroup.MarginLayoutParams wrapContent() {
+        return new ViewGroup.MarginLayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT);
+    }
+
+    private static View createDivider(Context c) {
+        View divider = new View(c);
+        divider.setId(R.id.separator);
+        ViewUtils.setBackgroundDrawable(divider, getThemeDrawable(c, android.R.attr.listDivider));
+        return divider;
+    }
+
+    /**
+     * Same as the subheader_* layouts.
+     *
+     * @param shifted Whether the text starts at 72dp (aligned with the avatar rows' text)
+     * @param accent  Whether the text is in the accent color
+     */
+    static AwesomeViewHolder createSubHeader(ViewGroup parent, boolean shifted, boolean accent) {
+        Context c = parent.getContext();
+        LinearLayout root = new LinearLayout(c);
+        root.setOrientation(LinearLayout.VERTICAL);
+        root.setLayoutParams(new RecyclerView.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, dp(c, 48)));
+        root.setPadding(dp(c, shifted ? 72 : 16), 0, 0, 0);
+        root.setClickable(false);
+
+        TextView text1 = createTextView(c, android.R.id.text1, 14,
+                accent ? R.attr.colorAccent : android.R.attr.textColorPrimary);
+        //The subheader layouts don't ellipsize
+        text1.setEllipsize(null);
+        text1.setGravity(Gravity.CENTER_VERTICAL);
+        LinearLayout.LayoutParams textParams = new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.MATCH_PARENT);
+        textParams.gravity = Gravity.CENTER_VERTICAL;
+        root.addView(text1, textParams);
+
+        return new AwesomeViewHolder(root, text1, null, null, null, null, null);
+    }
+
+    /**
+     * @param colorAttr The text color's theme attribute, or 0 to leave the default color
+     */
+    private static TextView createTextView(Context c, int id, int textSizeSp, int colorAttr) {
+        TextView textView = new TextView(c);
+        textView.setId(id);
+        textView.setSingleLine(true);
+        textView.setEllipsize(TextUtils.TruncateAt.END);
+        textView.setTextSize(TypedValue.COMPLEX_UNIT_SP, textSizeSp);
+        ColorStateList color = colorAttr != 0 ? getThemeColor(c, colorAttr) : null;
+        if (color != null)
+            textView.setTextColor(color);
+        return textView;
+    }
+
+    private static Drawable getThemeDrawable(Context c, int attr) {
+        TypedArray a = c.obtainStyledAttributes(new int[]{attr});
+        Drawable drawable = a.getDrawable(0);
+        a.recycle();
+        return drawable;
+    }
+
+    private static ColorStateList getThemeColor(Context c, int attr) {
+        TypedArray a = c.obtainStyledAttributes(new int[]{attr});
+        ColorStateList color = a.getColorStateList(0);
+        a.recycle();
+        return color;
+    }
+
+    private static int dp(Context c, int dp) {
+        return ViewUtils.convertDPtoPixels(c, dp);
+    }
+}
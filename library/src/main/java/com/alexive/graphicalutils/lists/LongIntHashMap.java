@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import java.util.Arrays;
+
+/**
+ * Map from primitive longs to non negative ints, with open addressing (linear probing), so
+ * there's no boxing. Used by {@link IdIndex} to find an item's position by its id.
+ */
+final class LongIntHashMap {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+    /**
+     * 0 marks a free slot, so the key 0 itself is kept apart.
+     */
+    private static final long FREE = 0L;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+    private int freeValue = -1;
+
+    /**
+     * @param expectedSize How many keys you expect to store. The table is sized so it doesn't
+     *                     need to grow until that many keys are added.
+     */
+    LongIntHashMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * @param value Must not be negative.
+     * @return The value the key had before, or -1 if it had none.
+     */
+    int put(long key, int value) {
+        if (key == FREE) {
+            int previous = freeValue;
+            freeValue = value;
+            if (previous < 0)
+                size++;
+            return previous;
+        }
+        int slot = Hashing.mix(key) & mask;
+        long current;
+        while ((current = keys[slot]) != FREE) {
+            if (current == key) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeAt)
+            rehash(keys.length << 1);
+        return -1;
+    }
+
+    /**
+     * @return The key's value, or -1 if it has none.
+     */
+    int get(long key) {
+        if (key == FREE)
+            return freeValue;
+        int slot = Hashing.mix(key) & mask;
+        long current;
+        while ((current = keys[slot]) != FREE) {
+            if (current == key)
+                return values[slot];
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes every key, keeping the table if it can hold expectedSize keys.
+     */
+    void clear(int expectedSize) {
+        int capacity = tableSizeFor(expectedSize);
+        if (capacity > keys.length)
+            allocate(capacity);
+        else
+            Arrays.fill(keys, FREE);
+        freeValue = -1;
+        size = 0;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = Math.min(capacity - 1, (int) (capacity * LOAD_FACTOR));
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == FREE)
+                continue;
+            int slot = Hashing.mix(oldKeys[i]) & mask;
+            while (keys[slot] != FREE)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR) + 1;
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed && capacity < (1 << 30))
+            capacity <<= 1;
+        return capacity;
+    }
+}
@@ -0,0 +1,454 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import java.util.Arrays;
+
+/**
+ * Set of longs kept as sorted, disjoint ranges of consecutive values (start and end included,
+ * never touching each other), in two parallel arrays. A range of any length is looked up,
+ * added or removed in O(log ranges), plus moving the ranges after it when one has to be
+ * inserted or split. Single values are ranges of one.
+ * <p>
+ * Used by {@link ListAdapter} to keep the checked items' ids: consecutive items usually have
+ * consecutive ids, so checking thousands of them (check all, drag selection) is one range.
+ */
+final class LongRangeSet {
+
+    /**
+     * Gets the ranges that an operation touched, in ascending order.
+     */
+    interface RangeConsumer {
+        void accept(long start, long end);
+    }
+
+    private static final int MIN_CAPACITY = 4;
+
+    private long[] starts;
+    private long[] ends;
+    private int rangeCount;
+    /**
+     * How many values are in the set. Kept as a long, a single range can hold more than an int.
+     */
+    private long size;
+    /**
+     * The range the last value {@link #contains(long)} looked up was in (or after). Lookups are
+     * usually in order (e.g. the items being bound as the list scrolls), so the next one is
+     * checked against it and its neighbours, in O(1), before the binary search.
+     */
+    private int lookupHint = 0;
+
+    LongRangeSet() {
+        starts = new long[MIN_CAPACITY];
+        ends = new long[MIN_CAPACITY];
+    }
+
+    LongRangeSet(LongRangeSet other) {
+        starts = Arrays.copyOf(other.starts, Math.max(other.rangeCount, MIN_CAPACITY));
+        ends = Arrays.copyOf(other.ends, starts.length);
+        rangeCount = other.rangeCount;
+        size = other.size;
+    }
+
+    /**
+     * @return How many values are in the set, up to Integer.MAX_VALUE.
+     */
+    int size() {
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    boolean isEmpty() {
+        return rangeCount == 0;
+    }
+
+    int getRangeCount() {
+        return rangeCount;
+    }
+
+    long getStart(int range) {
+        return starts[range];
+    }
+
+    long getEnd(int range) {
+        return ends[range];
+    }
+
+    void clear() {
+        rangeCount = 0;
+        size = 0;
+    }
+
+    boolean contains(long value) {
+        int range = lastStartAtMostNearHint(value);
+        return range >= 0 && ends[range] >= value;
+    }
+
+    /**
+     * @return true if the value was added, false if it was already in the set.
+     */
+    boolean add(long value) {
+        return add(value, value, null) != 0;
+    }
+
+    /**
+     * @return true if the value was removed, false if it wasn't in the set.
+     */
+    boolean remove(long value) {
+        return remove(value, value, null) != 0;
+    }
+
+    /**
+     * Adds every value from start to end, both included.
+     *
+     * @param added If not null, gets the parts of the range that weren't in the set.
+     * @return How many values were added.
+     */
+    long add(long start, long end, RangeConsumer added) {
+        if (start > end)
+            return 0;
+        if (added != null)
+            forEachMissing(start, end, added);
+        //The ranges that overlap or touch [start, end] are merged into one
+        int first = start == Long.MIN_VALUE ? 0 : firstEndAtLeast(start - 1);
+        int last = end == Long.MAX_VALUE ? rangeCount - 1 : lastStartAtMost(end + 1);
+        long before = size;
+        if (first <= last) {
+            start = Math.min(start, starts[first]);
+            end = Math.max(end, ends[last]);
+            for (int i = first; i <= last; i++)
+                size -= ends[i] - starts[i] + 1;
+        }
+        replace(first, last, 1);
+        starts[first] = start;
+        ends[first] = end;
+        size += end - start + 1;
+        return size - before;
+    }
+
+    /**
+     * Removes every value from start to end, both included.
+     *
+     * @param removed If not null, gets the parts of the range that were in the set.
+     * @return How many values were removed.
+     */
+    long remove(long start, long end, RangeConsumer removed) {
+        if (start > end)
+            return 0;
+        int first = firstEndAtLeast(start);
+        int last = lastStartAtMost(end);
+        if (first > last)
+            return 0;
+        if (removed != null)
+            forEachPresent(start, end, removed);
+        long before = size;
+        for (int i = first; i <= last; i++)
+            size -= ends[i] - starts[i] + 1;
+        //What's left of the first and last ranges, outside [start, end]
+        long leftStart = starts[first];
+        long rightEnd = ends[last];
+        boolean keepLeft = leftStart < start;
+        boolean keepRight = rightEnd > end;
+        replace(first, last, (keepLeft ? 1 : 0) + (keepRight ? 1 : 0));
+        int i = first;
+        if (keepLeft) {
+            starts[i] = leftStart;
+            ends[i] = start - 1;
+            size += start - leftStart;
+            i++;
+        }
+        if (keepRight) {
+            starts[i] = end + 1;
+            ends[i] = rightEnd;
+            size += rightEnd - end;
+        }
+        return before - size;
+    }
+
+    /**
+     * Adds every value of other, in O(ranges of both).
+     *
+     * @param added If not null, gets the ranges of other that weren't in the set.
+     * @return How many values were added.
+     */
+    long addAll(LongRangeSet other, RangeConsumer added) {
+        if (added != null)
+            forEachDifference(other, this, added);
+        long[] newStarts = new long[Math.max(rangeCount + other.rangeCount, MIN_CAPACITY)];
+        long[] newEnds = new long[newStarts.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < rangeCount || j < other.rangeCount) {
+            long start;
+            long end;
+            if (j >= other.rangeCount || (i < rangeCount && starts[i] <= other.starts[j])) {
+                start = starts[i];
+                end = ends[i++];
+            } else {
+                start = other.starts[j];
+                end = other.ends[j++];
+            }
+            long lastEnd = count > 0 ? newEnds[count - 1] : 0;
+            if (count > 0 && (lastEnd == Long.MAX_VALUE || start <= lastEnd + 1)) {
+                if (end > lastEnd)
+                    newEnds[count - 1] = end;
+            } else {
+                newStarts[count] = start;
+                newEnds[count++] = end;
+            }
+        }
+        long before = size;
+        adopt(newStarts, newEnds, count);
+        return size - before;
+    }
+
+    /**
+     * Removes every value of other, in O(ranges of both).
+     *
+     * @param removed If not null, gets the ranges of other that were in the set.
+     * @return How many values were removed.
+     */
+    long removeAll(LongRangeSet other, RangeConsumer removed) {
+        if (removed != null)
+            forEachIntersection(this, other, removed);
+        LongRangeSet difference = difference(this, other);
+        long before = size;
+        adopt(difference.starts, difference.ends, difference.rangeCount);
+        return before - size;
+    }
+
+    /**
+     * Adds a value that's not lower than any value in the set, in O(1). Used to build a set
+     * from sorted values.
+     */
+    void addLast(long value) {
+        addLast(value, value);
+    }
+
+    /**
+     * Same as {@link #addLast(long)}, for a range that doesn't start below any value in the set.
+     */
+    void addLast(long start, long end) {
+        if (rangeCount > 0) {
+            long lastEnd = ends[rangeCount - 1];
+            if (lastEnd == Long.MAX_VALUE || start <= lastEnd + 1) {
+                if (end > lastEnd) {
+                    size += end - lastEnd;
+                    ends[rangeCount - 1] = end;
+                }
+                return;
+            }
+        }
+        replace(rangeCount, rangeCount - 1, 1);
+        starts[rangeCount - 1] = start;
+        ends[rangeCount - 1] = end;
+        size += end - start + 1;
+    }
+
+    /**
+     * Calls consumer with the parts of [start, end] that aren't in the set.
+     */
+    void forEachMissing(long start, long end, RangeConsumer consumer) {
+        if (start > end)
+            return;
+        long cursor = start;
+        for (int i = firstEndAtLeast(start); i < rangeCount && starts[i] <= end; i++) {
+            if (starts[i] > cursor)
+                consumer.accept(cursor, starts[i] - 1);
+            if (ends[i] >= end)
+                return;
+            cursor = ends[i] + 1;
+        }
+        consumer.accept(cursor, end);
+    }
+
+    /**
+     * Calls consumer with the parts of [start, end] that are in the set.
+     */
+    void forEachPresent(long start, long end, RangeConsumer consumer) {
+        for (int i = firstEndAtLeast(start); i < rangeCount && starts[i] <= end; i++)
+            consumer.accept(Math.max(starts[i], start), Math.min(ends[i], end));
+    }
+
+    /**
+     * Calls consumer with the ranges of values in a that aren't in b, in O(ranges of both).
+     */
+    static void forEachDifference(LongRangeSet a, LongRangeSet b, RangeConsumer consumer) {
+        int j = 0;
+        for (int i = 0; i < a.rangeCount; i++) {
+            long cursor = a.starts[i];
+            long end = a.ends[i];
+            while (j < b.rangeCount && b.ends[j] < cursor)
+                j++;
+            boolean covered = false;
+            for (int k = j; k < b.rangeCount && b.starts[k] <= end; k++) {
+                if (b.starts[k] > cursor)
+                    consumer.accept(cursor, b.starts[k] - 1);
+                if (b.ends[k] >= end) {
+                    covered = true;
+                    break;
+                }
+                cursor = b.ends[k] + 1;
+            }
+            if (!covered)
+                consumer.accept(cursor, end);
+        }
+    }
+
+    /**
+     * Calls consumer with the ranges of values that are in both a and b, in O(ranges of both).
+     */
+    static void forEachIntersection(LongRangeSet a, LongRangeSet b, RangeConsumer consumer) {
+        int j = 0;
+        for (int i = 0; i < a.rangeCount; i++) {
+            while (j < b.rangeCount && b.ends[j] < a.starts[i])
+                j++;
+            for (int k = j; k < b.rangeCount && b.starts[k] <= a.ends[i]; k++)
+                consumer.accept(Math.max(a.starts[i], b.starts[k]),
+                        Math.min(a.ends[i], b.ends[k]));
+        }
+    }
+
+    /**
+     * @return A new set with the values of a that aren't in b.
+     */
+    static LongRangeSet difference(LongRangeSet a, LongRangeSet b) {
+        final LongRangeSet result = new LongRangeSet();
+        forEachDifference(a, b, new RangeConsumer() {
+            @Override
+            public void accept(long start, long end) {
+                result.addLast(start, end);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return A new array with all the values in the set, in ascending order.
+     */
+    long[] toArray() {
+        long[] result = new long[checkedSize()];
+        copyInto(result);
+        return result;
+    }
+
+    /**
+     * Same as {@link #toArray()}, but into an existing array, which must hold at least
+     * {@link #size()} values.
+     *
+     * @return The number of values copied, i.e. {@link #size()}.
+     */
+    int copyInto(long[] dest) {
+        int count = checkedSize();
+        if (dest.length < count)
+            throw new IllegalArgumentException("Array too small: " + dest.length + " < " + count);
+        int n = 0;
+        for (int i = 0; i < rangeCount; i++)
+            for (long value = starts[i]; ; value++) {
+                dest[n++] = value;
+                if (value == ends[i])
+                    break;
+            }
+        return n;
+    }
+
+    private int checkedSize() {
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalStateException("Too many values for an array: " + size);
+        return (int) size;
+    }
+
+    /**
+     * Replaces the ranges from first to last (none if last is first - 1) with count slots,
+     * moving the ranges after them.
+     */
+    private void replace(int first, int last, int count) {
+        int after = rangeCount - last - 1;
+        int newCount = rangeCount - (last - first + 1) + count;
+        if (newCount > starts.length) {
+            int capacity = Math.max(newCount, starts.length * 2);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        System.arraycopy(starts, last + 1, starts, first + count, after);
+        System.arraycopy(ends, last + 1, ends, first + count, after);
+        rangeCount = newCount;
+    }
+
+    private void adopt(long[] newStarts, long[] newEnds, int count) {
+        starts = newStarts;
+        ends = newEnds;
+        rangeCount = count;
+        size = 0;
+        for (int i = 0; i < count; i++)
+            size += ends[i] - starts[i] + 1;
+    }
+
+    /**
+     * @return The index of the first range that ends at or after value, or the number of ranges
+     * if there's none.
+     */
+    private int firstEndAtLeast(long value) {
+        int low = 0;
+        int high = rangeCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ends[mid] < value)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Same as {@link #lastStartAtMost(long)}, in O(1) if the range is the one of the last
+     * lookup or one next to it.
+     */
+    private int lastStartAtMostNearHint(long value) {
+        //Read once: the hint may be written by another thread reading the same (unchanging) set
+        int hint = lookupHint;
+        if (rangeCount == 0 || value < starts[0])
+            return -1;
+        for (int range = Math.max(hint - 1, 0); range <= hint + 1 && range < rangeCount;
+             range++) {
+            if (starts[range] <= value && (range + 1 == rangeCount || starts[range + 1] > value)) {
+                lookupHint = range;
+                return range;
+            }
+        }
+        int range = lastStartAtMost(value);
+        lookupHint = Math.max(range, 0);
+        return range;
+    }
+
+    /**
+     * @return The index of the last range that starts at or before value, or -1 if there's none.
+     */
+    private int lastStartAtMost(long value) {
+        int low = 0;
+        int high = rangeCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= value)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low - 1;
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Holds the data shown by a {@link ListAdapter} (or {@link GridAdapter}) when it's too large
+ * to be loaded at once. Items are loaded in pages, on a background thread, as the list gets
+ * near them; until then they're shown as placeholders (see
+ * {@link BaseAdapter#bindPlaceholder(int, ItemRow)}). Only a few pages are kept in memory,
+ * the ones farthest from where the user is get dropped (and loaded again if needed). The
+ * pages of the items on screen are never dropped, so if a screenful takes more than
+ * maxResidentPages pages, that many more are kept: pick a pageSize * maxResidentPages of a
+ * few screenfuls.
+ * <p>
+ * Create it in your adapter, call {@link #refresh()} and read the data from it:
+ * <pre>
+ * pagedList = new PagedList&lt;Contact&gt;(this, 50, 10) {...};
+ * pagedList.refresh();
+ * ...
+ * public int getNumItems() { return pagedList.size(); }
+ *
+ * public ListItemType getListItemDataType(int i) {
+ *     Contact c = pagedList.get(i);
+ *     return c == null ? ListItemType.ONE_TEXT_AND_AVATAR : c.getType();
+ * }
+ *
+ * public void bindDataToRow(int i, ItemRow row) {
+ *     //Placeholders aren't bound here, so the item is loaded
+ *     Contact c = pagedList.get(i);
+ *     ...
+ * }
+ * </pre>
+ * While it's attached, {@link ListAdapter#getIdForItem(int)} returns the ids given by
+ * {@link #getIdForItem(Object)}, so the checked items stay checked when their pages are dropped
+ * and loaded again. Placeholders can't be checked; their ids
+ * ({@code Long.MIN_VALUE + 1 + index}) are only stable until their page is loaded, when they
+ * become the loaded items' ids (and back, when the page is dropped), so don't keep them. The
+ * adapter still reports stable ids, so RecyclerView sees a page being loaded or dropped as its
+ * items being replaced, not changed, and animates it that way.
+ * <p>
+ * If loading fails ({@link #loadCount()} or {@link #loadPage(int, int)} throws), the exception
+ * is passed to {@link #onLoadFailed(int, int, RuntimeException)} on the main thread, and the
+ * page's items stay placeholders until the list asks for them again, which loads it again.
+ */
+public abstract class PagedList<T> {
+
+    private static ExecutorService defaultExecutor;
+
+    private final ListAdapter adapter;
+    private final int pageSize;
+    private final int maxResidentPages;
+    private final Executor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final SparseArray<List<T>> pages = new SparseArray<>();
+    private final SparseBooleanArray loadingPages = new SparseBooleanArray();
+    private int prefetchDistance;
+    private int size = 0;
+    private int lastAccessedPage = 0;
+    /**
+     * Bumped by {@link #refresh()}, so the loads started before it are dropped.
+     */
+    private int generation = 0;
+
+    /**
+     * @param pageSize         How many items are loaded at a time
+     * @param maxResidentPages How many pages are kept in memory. The memory budget is, roughly,
+     *                         pageSize * maxResidentPages items. At least 2. The pages on
+     *                         screen are kept even if there are more
+     */
+    public PagedList(ListAdapter adapter, int pageSize, int maxResidentPages) {
+        this(adapter, pageSize, maxResidentPages, getDefaultExecutor());
+    }
+
+    /**
+     * @param executor Where the pages (and the count) are loaded.
+     */
+    public PagedList(ListAdapter adapter, int pageSize, int maxResidentPages,
+                     Executor executor) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("pageSize must be positive");
+        if (maxResidentPages < 2)
+            throw new IllegalArgumentException("At least 2 pages must be kept in memory");
+        this.adapter = adapter;
+        this.pageSize = pageSize;
+        this.maxResidentPages = maxResidentPages;
+        this.executor = executor;
+        this.prefetchDistance = pageSize / 2;
+        adapter.setPagedList(this);
+    }
+
+    private static synchronized ExecutorService getDefaultExecutor() {
+        if (defaultExecutor == null)
+            defaultExecutor = Executors.newSingleThreadExecutor();
+        return defaultExecutor;
+    }
+
+    /**
+     * Called on a background thread.
+     *
+     * @return The total number of items.
+     */
+    protected abstract int loadCount();
+
+    /**
+     * Called on a background thread.
+     *
+     * @param start The index of the first item to load
+     * @param count How many items to load. Less than pageSize for the last page
+     * @return The items. Mustn't contain nulls
+     */
+    protected abstract List<T> loadPage(int start, int count);
+
+    /**
+     * @return A stable id for this item, the same as you'd return in
+     * {@link ListAdapter#getIdForItem(int)}.
+     */
+    protected abstract long getIdForItem(T item);
+
+    /**
+     * Called on the main thread when {@link #loadCount()} or {@link #loadPage(int, int)} throws,
+     * e.g. to show an error. The page is loaded again the next time one of its items is needed;
+     * the count, the next time {@link #refresh()} is called. The default implementation does
+     * nothing.
+     *
+     * @param start The start passed to loadPage, or -1 if it was loadCount that failed
+     * @param count The count passed to loadPage, or -1 if it was loadCount that failed
+     */
+    protected void onLoadFailed(int start, int count, RuntimeException error) {
+    }
+
+    /**
+     * How close (in items) to the next (or previous) page the list must get for it to be
+     * loaded. Defaults to half a page.
+     */
+    public void setPrefetchDistance(int prefetchDistance) {
+        this.prefetchDistance = prefetchDistance;
+    }
+
+    /**
+     * Drops every page and loads the number of items again (and, as the list asks for them,
+     * the items). Call it once the PagedList is created and whenever the data changes. Must be
+     * called from the main thread.
+     */
+    public void refresh() {
+        final int runGeneration = ++generation;
+        pages.clear();
+        loadingPages.clear();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final int count;
+                try {
+                    count = loadCount();
+                } catch (final RuntimeException ex) {
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (runGeneration == generation)
+                                onLoadFailed(-1, -1, ex);
+                        }
+                    });
+                    return;
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (runGeneration != generation)
+                            return;
+                        int oldSize = size;
+                        size = count;
+                        if (oldSize == 0)
+                            adapter.notifyItemRangeInserted(adapter.getRealAdapterPosition(0),
+                                    count);
+                        else
+                            adapter.notifyDataSetChanged();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return The number of items, loaded or not. 0 until the count is loaded.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets an item, loading its page (and maybe the next or previous one) if needed.
+     * Must be called from the main thread.
+     *
+     * @return The item, or null if it isn't loaded yet. The adapter is notified once it is.
+     */
+    public T get(int index) {
+        int page = index / pageSize;
+        lastAccessedPage = page;
+        int offset = index - page * pageSize;
+        if (offset < prefetchDistance && page > 0)
+            loadPage(page - 1);
+        else if (offset >= pageSize - prefetchDistance && (page + 1) * pageSize < size)
+            loadPage(page + 1);
+        List<T> items = pages.get(page);
+        if (items == null) {
+            loadPage(page);
+            return null;
+        }
+        return offset < items.size() ? items.get(offset) : null;
+    }
+
+    /**
+     * @return true if the item at index is loaded. Unlike {@link #get(int)}, it doesn't load
+     * anything.
+     */
+    public boolean isLoaded(int index) {
+        List<T> items = pages.get(index / pageSize);
+        return items != null && index % pageSize < items.size();
+    }
+
+    long getItemId(int index) {
+        List<T> items = pages.get(index / pageSize);
+        if (items == null || index % pageSize >= items.size())
+            //Placeholders need ids too, these shouldn't clash with the items'. They change
+            //to the items' ids when the page is loaded
+            return Long.MIN_VALUE + 1 + index;
+        return getIdForItem(items.get(index % pageSize));
+    }
+
+    private void loadPage(final int page) {
+        if (pages.get(page) != null || loadingPages.get(page))
+            return;
+        loadingPages.put(page, true);
+        final int runGeneration = generation;
+        final int start = page * pageSize;
+        final int count = Math.min(pageSize, size - start);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<T> items;
+                try {
+                    items = loadPage(start, count);
+                } catch (final RuntimeException ex) {
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (runGeneration != generation)
+                                return;
+                            //So the page is loaded again when it's needed
+                            loadingPages.delete(page);
+                            onLoadFailed(start, count, ex);
+                        }
+                    });
+                    return;
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (runGeneration != generation)
+                            return;
+                        loadingPages.delete(page);
+                        pages.put(page, items);
+                        trimPages();
+                        //The items' view types may be other than the placeholders'
+                        adapter.notifyItemRangeChanged(adapter.getRealAdapterPosition(start),
+                                Math.min(count, size - start));
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Drops the pages farthest from the last one accessed, until there are no more than
+     * maxResidentPages in memory. The pages of the items on screen are kept: one dropped would
+     * be shown as placeholders and loaded again, dropping another one, and so on.
+     */
+    private void trimPages() {
+        int firstShownPage = Integer.MAX_VALUE;
+        int lastShownPage = -1;
+        RecyclerView recyclerView = adapter.getRecyclerView();
+        if (recyclerView != null) {
+            int offset = adapter.getRealAdapterPosition(0);
+            for (int i = 0; i < recyclerView.getChildCount(); i++) {
+                int index = recyclerView.getChildAdapterPosition(recyclerView.getChildAt(i)) -
+                        offset;
+                //The header view, or a view being removed
+                if (index < 0 || index >= size)
+                    continue;
+                firstShownPage = Math.min(firstShownPage, index / pageSize);
+                lastShownPage = Math.max(lastShownPage, index / pageSize);
+            }
+        }
+        while (pages.size() > maxResidentPages) {
+            int farthest = -1;
+            for (int i = 0; i < pages.size(); i++) {
+                int page = pages.keyAt(i);
+                if (page >= firstShownPage && page <= lastShownPage)
+                    continue;
+                if (farthest < 0 || Math.abs(page - lastAccessedPage) >
+                        Math.abs(pages.keyAt(farthest) - lastAccessedPage))
+                    farthest = i;
+            }
+            if (farthest < 0)
+                return;
+            int page = pages.keyAt(farthest);
+            pages.removeAt(farthest);
+            int start = page * pageSize;
+            adapter.notifyItemRangeChanged(adapter.getRealAdapterPosition(start),
+                    Math.min(pageSize, size - start));
+        }
+    }
+}
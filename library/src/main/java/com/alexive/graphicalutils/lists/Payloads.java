@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import java.util.List;
+
+/**
+ * The payloads the adapters notify partial changes with, so the observers (the caches and
+ * indexes, the decorations, the layout manager) can tell them apart from real changes.
+ */
+final class Payloads {
+
+    /**
+     * Payload sent when the checkboxes are shown/hidden. Binding it just swaps the checkbox and
+     * the view beneath it, nothing else is bound again.
+     */
+    static final Object CHECKBOX_MODE = new Object();
+    /**
+     * Payload sent when items are checked/unchecked. Binding it just sets the checkbox's state.
+     */
+    static final Object CHECKED = new Object();
+
+    private Payloads() {
+    }
+
+    /**
+     * @return Whether a change notified with this payload is only to the checkboxes (shown or
+     * checked), so the items' view types, ids and subheaders are the same.
+     */
+    static boolean isCheckBoxPayload(Object payload) {
+        return payload == CHECKBOX_MODE || payload == CHECKED;
+    }
+
+    static boolean onlyCheckBoxPayloads(List<Object> payloads) {
+        for (int i = 0; i < payloads.size(); i++)
+            if (!isCheckBoxPayload(payloads.get(i)))
+                return false;
+        return true;
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import android.support.v7.widget.RecyclerView;
+
+import java.util.Arrays;
+
+/**
+ * The sections of a list, that is, the positions of its subheaders
+ * ({@link ListItemType#SUB_HEADER} items). It's built (in O(n)) the first time it's needed;
+ * after that, finding the section of any item is a binary search.
+ * Get it with {@link BaseAdapter#getSectionIndex()}.
+ * <p>
+ * The index follows the adapter's notifications: items inserted, removed or moved make it
+ * look at the items from the first one affected on again, changed items are only looked at
+ * themselves (checking items, loading a page of a {@link PagedList}... usually leaves the
+ * subheaders where they were, so the index is kept as is).
+ * <p>
+ * Indexes are the items' indexes in the list (as in {@link BaseAdapter#getListItemDataType(int)}),
+ * the header view isn't counted. With a {@link PagedList}, only the subheaders that are loaded
+ * are known; they're added as their pages are loaded.
+ */
+public class SectionIndex {
+
+    private static final int CLEAN = Integer.MAX_VALUE;
+
+    private final BaseAdapter adapter;
+    /**
+     * The subheaders' indexes, sorted. Only the first sectionCount are valid.
+     */
+    private int[] sectionStarts = new int[16];
+    private int sectionCount = 0;
+    /**
+     * The items from here on must be looked at again.
+     */
+    private int dirtyFrom = 0;
+    /**
+     * The items that were changed since, from changedFrom to changedTo (excluded). They're
+     * looked at when the index is next needed, since the view types may not be up to date
+     * when the adapter's observers are notified.
+     */
+    private int changedFrom = CLEAN;
+    private int changedTo = 0;
+
+    SectionIndex(BaseAdapter adapter) {
+        this.adapter = adapter;
+        adapter.registerAdapterDataObserver(new InvalidatingObserver());
+    }
+
+    private void update() {
+        int count = adapter.getNumItems();
+        if (changedFrom < changedTo) {
+            int to = Math.min(changedTo, Math.min(count, dirtyFrom));
+            if (changedFrom < to)
+                updateRange(changedFrom, to);
+            changedFrom = CLEAN;
+            changedTo = 0;
+        }
+        if (dirtyFrom == CLEAN)
+            return;
+        //The sections before the first affected item are still right
+        sectionCount = countSectionsBefore(dirtyFrom);
+        for (int i = dirtyFrom; i < count; i++)
+            if (isSubHeader(i))
+                append(i);
+        dirtyFrom = CLEAN;
+    }
+
+    /**
+     * Replaces the subheaders from start to end (excluded) with the items that are subheaders
+     * now, if any of them changed.
+     */
+    private void updateRange(int start, int end) {
+        int first = countSectionsBefore(start);
+        int last = countSectionsBefore(end);
+        int found = 0;
+        boolean same = true;
+        for (int i = start; i < end; i++) {
+            if (!isSubHeader(i))
+                continue;
+            same &= first + found < last && sectionStarts[first + found] == i;
+            found++;
+        }
+        if (same && found == last - first)
+            return;
+        int[] tail = Arrays.copyOfRange(sectionStarts, last, sectionCount);
+        sectionCount = first;
+        for (int i = start; i < end; i++)
+            if (isSubHeader(i))
+                append(i);
+        ensureCapacity(sectionCount + tail.length);
+        System.arraycopy(tail, 0, sectionStarts, sectionCount, tail.length);
+        sectionCount += tail.length;
+    }
+
+    private boolean isSubHeader(int index) {
+        //Going through the whole list mustn't load every page of a PagedList
+        return adapter.isLoaded(index) &&
+                adapter.getCachedListItemType(index) == ListItemType.SUB_HEADER;
+    }
+
+    private void append(int index) {
+        ensureCapacity(sectionCount + 1);
+        sectionStarts[sectionCount++] = index;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > sectionStarts.length)
+            sectionStarts = Arrays.copyOf(sectionStarts,
+                    Math.max(capacity, sectionStarts.length * 2));
+    }
+
+    /**
+     * @return How many subheaders are before the item at index.
+     */
+    private int countSectionsBefore(int index) {
+        int found = Arrays.binarySearch(sectionStarts, 0, sectionCount, index);
+        return found >= 0 ? found : -found - 1;
+    }
+
+    /**
+     * Forgets the sections, they're found again the next time they're needed. You only need to
+     * call it if the subheaders change without the adapter being notified.
+     */
+    public void invalidate() {
+        invalidateFrom(0);
+    }
+
+    /**
+     * Forgets the sections from the item at index on.
+     */
+    private void invalidateFrom(int index) {
+        //The changed items' positions may have moved, so they're looked at again as well
+        dirtyFrom = Math.min(dirtyFrom, Math.min(changedFrom, Math.max(index, 0)));
+        changedFrom = CLEAN;
+        changedTo = 0;
+    }
+
+    private void onItemsChanged(int index, int count) {
+        int end = index + count;
+        index = Math.max(index, 0);
+        if (index >= end || index >= dirtyFrom)
+            return;
+        changedFrom = Math.min(changedFrom, index);
+        changedTo = Math.max(changedTo, end);
+    }
+
+    /**
+     * @return The number of sections (subheaders) in the list.
+     */
+    public int getSectionCount() {
+        update();
+        return sectionCount;
+    }
+
+    /**
+     * @return The section the item at index belongs to (the subheader itself belongs to its own
+     * section), or -1 if it's above the first subheader.
+     */
+    public int getSectionForIndex(int index) {
+        update();
+        int found = Arrays.binarySearch(sectionStarts, 0, sectionCount, index);
+        //If it isn't a subheader, binarySearch returns -(insertion point) - 1
+        return found >= 0 ? found : -found - 2;
+    }
+
+    /**
+     * @return The index of the subheader of the section the item at index belongs to, or -1 if
+     * it's above the first subheader.
+     */
+    public int getSectionStart(int index) {
+        int section = getSectionForIndex(index);
+        return section < 0 ? -1 : sectionStarts[section];
+    }
+
+    /**
+     * @return The index of a section's subheader.
+     */
+    public int getSectionStartForSection(int section) {
+        update();
+        if (section < 0 || section >= sectionCount)
+            throw new IndexOutOfBoundsException("Section " + section + " of " + sectionCount);
+        return sectionStarts[section];
+    }
+
+    /**
+     * @return The index of the subheader that follows the item at index, or -1 if it's in the
+     * last section.
+     */
+    public int getNextSectionStart(int index) {
+        int next = getSectionForIndex(index) + 1;
+        return next < sectionCount ? sectionStarts[next] : -1;
+    }
+
+    private class InvalidatingObserver extends RecyclerView.AdapterDataObserver {
+
+        @Override
+        public void onChanged() {
+            invalidate();
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+            //Showing/checking the checkboxes doesn't change the subheaders
+            if (!Payloads.isCheckBoxPayload(payload))
+                onItemRangeChanged(positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            onItemsChanged(positionStart - adapter.getRealAdapterPosition(0), itemCount);
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            invalidateFrom(positionStart - adapter.getRealAdapterPosition(0));
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            invalidateFrom(positionStart - adapter.getRealAdapterPosition(0));
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            invalidateFrom(Math.min(fromPosition, toPosition) -
+                    adapter.getRealAdapterPosition(0));
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A copy of a {@link ListAdapter}'s checked items, taken by {@link ListAdapter#getSelection()}.
+ * It doesn't change with the adapter, so it can be handed to a background thread, e.g. to
+ * delete the checked items.
+ * <p>
+ * After {@link ListAdapter#checkAll()} the adapter doesn't list the checked items, it only
+ * lists the ones unchecked since ({@link #isAllExcept()}), so a list of a million items is
+ * checked in O(1). If the adapter's ids are consecutive
+ * ({@link ListAdapter#hasConsecutiveIds()}) the checked ids are still known; otherwise
+ * stream the ids of all the items through {@link #iterator(LongIterator)}, or pass
+ * {@link #getListedIds()} to a backend query (e.g. {@code WHERE id NOT IN (...)}).
+ */
+public final class Selection {
+
+    /**
+     * Iterates over primitive longs, without boxing them.
+     */
+    public interface LongIterator {
+        boolean hasNext();
+
+        long next();
+    }
+
+    private final LongRangeSet listed;
+    private final boolean allExcept;
+    private final int count;
+    /**
+     * The checked ids, or null if they aren't known.
+     */
+    private final LongRangeSet checked;
+
+    /**
+     * @param listed    The checked ids or, if allExcept, the unchecked ones. Must not be changed
+     *                  afterwards.
+     * @param allIds    The ids of all the items, if they're known, otherwise null.
+     */
+    Selection(LongRangeSet listed, boolean allExcept, int count, LongRangeSet allIds) {
+        this.listed = listed;
+        this.allExcept = allExcept;
+        this.count = count;
+        if (!allExcept)
+            checked = listed;
+        else
+            checked = allIds != null ? LongRangeSet.difference(allIds, listed) : null;
+    }
+
+    /**
+     * @return true if every item is checked but the ones in {@link #getListedIds()}.
+     */
+    public boolean isAllExcept() {
+        return allExcept;
+    }
+
+    /**
+     * @return How many items are checked.
+     */
+    public int size() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * @return Whether the item with that id is checked. If {@link #isAllExcept()} and the ids
+     * aren't known, any id that isn't listed is.
+     */
+    public boolean contains(long id) {
+        return checked != null ? checked.contains(id) : !listed.contains(id);
+    }
+
+    /**
+     * @return Whether the checked ids are known, i.e. {@link #iterator()} can be used.
+     */
+    public boolean hasCheckedIds() {
+        return checked != null;
+    }
+
+    /**
+     * @return The checked ids, in ascending order.
+     * @throws IllegalStateException If they aren't known, see {@link #hasCheckedIds()}.
+     */
+    public LongIterator iterator() {
+        if (checked == null)
+            throw new IllegalStateException("Every item but some is checked and the ids " +
+                    "aren't consecutive, use iterator(allIds)");
+        return new RangeIterator(checked);
+    }
+
+    /**
+     * @param allIds The ids of all the items, e.g. read from a database cursor.
+     * @return The ones that are checked, in the same order.
+     */
+    public LongIterator iterator(LongIterator allIds) {
+        return new FilterIterator(allIds);
+    }
+
+    /**
+     * @return The ids that are listed: the checked ones or, if {@link #isAllExcept()}, the
+     * unchecked ones. In ascending order.
+     */
+    public LongIterator getListedIds() {
+        return new RangeIterator(listed);
+    }
+
+    private static class RangeIterator implements LongIterator {
+
+        private final LongRangeSet set;
+        private int range = 0;
+        private long next;
+
+        RangeIterator(LongRangeSet set) {
+            this.set = set;
+            if (!set.isEmpty())
+                next = set.getStart(0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return range < set.getRangeCount();
+        }
+
+        @Override
+        public long next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            long value = next;
+            if (value == set.getEnd(range)) {
+                if (++range < set.getRangeCount())
+                    next = set.getStart(range);
+            } else
+                next++;
+            return value;
+        }
+    }
+
+    private class FilterIterator implements LongIterator {
+
+        private final LongIterator source;
+        private boolean hasNext;
+        private long next;
+
+        FilterIterator(LongIterator source) {
+            this.source = source;
+            advance();
+        }
+
+        private void advance() {
+            hasNext = false;
+            while (source.hasNext()) {
+                long id = source.next();
+                if (contains(id)) {
+                    next = id;
+                    hasNext = true;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @Override
+        public long next() {
+            if (!hasNext)
+                throw new NoSuchElementException();
+            long value = next;
+            advance();
+            return value;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import java.util.Arrays;
+
+/**
+ * What changed in a {@link ListAdapter}'s checked items since the last
+ * {@link ListAdapter.SelectionChangeListener} call: the ids (as returned by
+ * {@link ListAdapter#getIdForItem(int)}) that were checked and the ones that were unchecked.
+ * Changes are netted, so an item checked and unchecked again in the same frame isn't in either.
+ * Changes to every item at once ({@link ListAdapter#checkAll()},
+ * {@link ListAdapter#invertChecked()}...) aren't listed, see {@link #isReset()}.
+ * <p>
+ * The adapter reuses the same instance (and arrays) for every call, so copy what you need
+ * instead of keeping it.
+ */
+public final class SelectionDelta {
+
+    private LongRangeSet pendingAdded = new LongRangeSet();
+    private LongRangeSet pendingRemoved = new LongRangeSet();
+    private LongRangeSet added = new LongRangeSet();
+    private LongRangeSet removed = new LongRangeSet();
+    private long[] addedIds = new long[0];
+    private long[] removedIds = new long[0];
+    private boolean addedIdsValid = true;
+    private boolean removedIdsValid = true;
+    private boolean pendingReset = false;
+    private boolean reset = false;
+
+    private final LongRangeSet.RangeConsumer addToAdded = new LongRangeSet.RangeConsumer() {
+        @Override
+        public void accept(long start, long end) {
+            pendingAdded.add(start, end, null);
+        }
+    };
+    private final LongRangeSet.RangeConsumer addToRemoved = new LongRangeSet.RangeConsumer() {
+        @Override
+        public void accept(long start, long end) {
+            pendingRemoved.add(start, end, null);
+        }
+    };
+
+    SelectionDelta() {
+    }
+
+    /**
+     * @return How many items were checked.
+     */
+    public int getAddedCount() {
+        return added.size();
+    }
+
+    /**
+     * @return The ids of the items that were checked, in ascending order. Only the first
+     * {@link #getAddedCount()} values are valid, the array may be larger.
+     */
+    public long[] getAddedIds() {
+        if (!addedIdsValid) {
+            if (addedIds.length < added.size())
+                addedIds = new long[Math.max(added.size(), addedIds.length * 2)];
+            added.copyInto(addedIds);
+            addedIdsValid = true;
+        }
+        return addedIds;
+    }
+
+    public boolean wasAdded(long id) {
+        return added.contains(id);
+    }
+
+    /**
+     * @return How many items were unchecked.
+     */
+    public int getRemovedCount() {
+        return removed.size();
+    }
+
+    /**
+     * @return The ids of the items that were unchecked, in ascending order. Only the first
+     * {@link #getRemovedCount()} values are valid, the array may be larger.
+     */
+    public long[] getRemovedIds() {
+        if (!removedIdsValid) {
+            if (removedIds.length < removed.size())
+                removedIds = new long[Math.max(removed.size(), removedIds.length * 2)];
+            removed.copyInto(removedIds);
+            removedIdsValid = true;
+        }
+        return removedIds;
+    }
+
+    public boolean wasRemoved(long id) {
+        return removed.contains(id);
+    }
+
+    /**
+     * @return true if any item may have changed, e.g. every item was checked, so the ids aren't
+     * listed (there may be millions of them): read the checked items again, from
+     * {@link ListAdapter#getSelection()}.
+     */
+    public boolean isReset() {
+        return reset;
+    }
+
+    public boolean isEmpty() {
+        return !reset && added.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * Records that any item may have changed. Until the listeners are called, the items that
+     * change aren't recorded.
+     */
+    void recordReset() {
+        pendingReset = true;
+        pendingAdded.clear();
+        pendingRemoved.clear();
+    }
+
+    /**
+     * Records that the items with the ids from start to end (both included) were checked or
+     * unchecked. Must only be called with ids whose state actually changed.
+     */
+    void record(long start, long end, boolean checked) {
+        if (pendingReset)
+            return;
+        LongRangeSet opposite = checked ? pendingRemoved : pendingAdded;
+        //Whatever was pending the other way cancels out, the rest is pending this way
+        opposite.forEachMissing(start, end, checked ? addToAdded : addToRemoved);
+        opposite.remove(start, end, null);
+    }
+
+    /**
+     * Moves the changes recorded so far to the ones the listeners read, so the ones recorded
+     * while they're being called are left for the next time.
+     */
+    void publish() {
+        LongRangeSet oldAdded = added;
+        LongRangeSet oldRemoved = removed;
+        added = pendingAdded;
+        removed = pendingRemoved;
+        pendingAdded = oldAdded;
+        pendingRemoved = oldRemoved;
+        pendingAdded.clear();
+        pendingRemoved.clear();
+        addedIdsValid = false;
+        removedIdsValid = false;
+        reset = pendingReset;
+        pendingReset = false;
+    }
+
+    @Override
+    public String toString() {
+        if (reset)
+            return "SelectionDelta{reset}";
+        return "SelectionDelta{added=" + Arrays.toString(Arrays.copyOf(getAddedIds(),
+                getAddedCount())) + ", removed=" + Arrays.toString(Arrays.copyOf(getRemovedIds(),
+                getRemovedCount())) + "}";
+    }
+}
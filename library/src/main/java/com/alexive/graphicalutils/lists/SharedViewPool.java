@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * RecycledViewPool shared by every RecyclerView (of a given Activity) that uses this
+ * library's adapters, so lists showing the same types of items (e.g. in tabs) don't inflate
+ * the same layouts over and over again. Holders are pooled by their view type, that is,
+ * {@link ListItemType}'s layout or {@link AwesomeViewTypes}' code, and are reset when they
+ * move from an adapter to another.
+ * <p>
+ * Header views and grid items are never pooled: they depend on the adapter that created them.
+ * Adapters sharing a pool should agree on {@link BaseAdapter#shiftShubheadersText(boolean)}.
+ */
+public class SharedViewPool extends RecyclerView.RecycledViewPool {
+
+    private static final WeakHashMap<Context, WeakReference<SharedViewPool>> POOLS =
+            new WeakHashMap<>();
+
+    private SharedViewPool() {
+        setMaxRecycledViews(AwesomeViewTypes.HEADER.code, 0);
+        setMaxRecycledViews(ListItemType.GRID_ITEM.resId, 0);
+    }
+
+    /**
+     * Gets the pool shared by the lists of a context. The pool (and the views in it) is kept
+     * only while a RecyclerView uses it.
+     *
+     * @param context The Activity the lists belong to. Views can't be shared between
+     *                Activities, since they keep their Context (and theme).
+     */
+    public static SharedViewPool getInstance(Context context) {
+        WeakReference<SharedViewPool> reference = POOLS.get(context);
+        SharedViewPool pool = reference != null ? reference.get() : null;
+        if (pool == null) {
+            pool = new SharedViewPool();
+            POOLS.put(context, new WeakReference<>(pool));
+        }
+        return pool;
+    }
+
+    /**
+     * Sets how many unused holders of a given type the pool keeps.
+     * Defaults to 5, except for {@link ListItemType#GRID_ITEM} which isn't pooled.
+     */
+    public void setCapacity(ListItemType type, int capacity) {
+        if (type == ListItemType.SUB_HEADER) {
+            setMaxRecycledViews(AwesomeViewTypes.SUB_HEADER_NORMAL.code, capacity);
+            setMaxRecycledViews(AwesomeViewTypes.SUB_HEADER_SHIFTED.code, capacity);
+        } else
+            setMaxRecycledViews(type.resId, capacity);
+    }
+}
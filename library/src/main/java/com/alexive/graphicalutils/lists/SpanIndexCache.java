@@ -0,0 +1,244 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import android.support.v7.widget.RecyclerView;
+
+import java.util.Arrays;
+
+/**
+ * The column (span index) and row (span group index) of each position of a
+ * {@link GridAdapter}, as a GridLayoutManager lays them out: grid items take one column, every
+ * other item (subheaders, list items, the header view) takes a whole row.
+ * <p>
+ * An item's column and row only depend on the items before it, so the cache is a prefix of the
+ * adapter: it's extended up to the position that's asked for, and items inserted, removed or
+ * moved at a position only forget the positions from there on. Changed items are only looked at
+ * themselves: the positions after them are only forgotten if one's kind (tile, row or
+ * subheader) changed. Scrolling through the list costs O(1) per item.
+ * Positions are adapter positions (the header view, if there's one, is 0).
+ */
+final class SpanIndexCache {
+
+    /**
+     * A grid item, one column wide.
+     */
+    private static final byte KIND_TILE = 0;
+    /**
+     * A whole row that's spaced like the tiles (e.g. a list item).
+     */
+    private static final byte KIND_ROW = 1;
+    /**
+     * A whole row that isn't spaced and separates groups of tiles (subheaders, the header view).
+     */
+    private static final byte KIND_BREAK = 2;
+    private static final int CLEAN = Integer.MAX_VALUE;
+
+    private final GridAdapter adapter;
+    private int spanCount = 1;
+    private int[] spanIndexes = new int[0];
+    private int[] spanGroups = new int[0];
+    private byte[] kinds = new byte[0];
+    /**
+     * How many positions, from 0, are known.
+     */
+    private int validCount = 0;
+    /**
+     * The positions that were changed since, from changedFrom to changedTo (excluded). They're
+     * looked at when the cache is next used, since the view types may not be up to date when
+     * the adapter's observers are notified.
+     */
+    private int changedFrom = CLEAN;
+    private int changedTo = 0;
+
+    SpanIndexCache(GridAdapter adapter) {
+        this.adapter = adapter;
+        adapter.registerAdapterDataObserver(new InvalidatingObserver());
+    }
+
+    void setSpanCount(int spanCount) {
+        spanCount = Math.max(spanCount, 1);
+        if (spanCount != this.spanCount) {
+            this.spanCount = spanCount;
+            validCount = 0;
+        }
+    }
+
+    int getSpanCount() {
+        return spanCount;
+    }
+
+    /**
+     * Forgets every position.
+     */
+    void invalidate() {
+        validCount = 0;
+    }
+
+    /**
+     * Forgets the positions from position on.
+     */
+    void invalidateFrom(int position) {
+        validCount = Math.max(0, Math.min(validCount, position));
+        changedTo = Math.min(changedTo, validCount);
+    }
+
+    private void onItemsChanged(int position, int count) {
+        int end = Math.min(position + count, validCount);
+        position = Math.max(position, 0);
+        if (position >= end)
+            return;
+        changedFrom = Math.min(changedFrom, position);
+        changedTo = Math.max(changedTo, end);
+    }
+
+    /**
+     * Looks at the changed positions again: if one's kind changed, the positions from there on
+     * are forgotten, otherwise the cache is still right.
+     */
+    private void checkChanged() {
+        int to = Math.min(changedTo, validCount);
+        for (int i = changedFrom; i < to; i++)
+            if (getKind(adapter.getItemViewType(i)) != kinds[i]) {
+                validCount = i;
+                break;
+            }
+        changedFrom = CLEAN;
+        changedTo = 0;
+    }
+
+    int getSpanIndex(int position) {
+        ensure(position);
+        return spanIndexes[position];
+    }
+
+    int getSpanGroupIndex(int position) {
+        ensure(position);
+        return spanGroups[position];
+    }
+
+    int getSpanSize(int position) {
+        ensure(position);
+        return kinds[position] == KIND_TILE ? 1 : spanCount;
+    }
+
+    /**
+     * @return Whether the item at position is spaced, that is, it isn't a subheader nor the
+     * header view.
+     */
+    boolean isSpaced(int position) {
+        ensure(position);
+        return kinds[position] != KIND_BREAK;
+    }
+
+    /**
+     * @return Whether the item at position is in the first row after a subheader (or the top of
+     * the list).
+     */
+    boolean isInFirstRow(int position) {
+        ensure(position);
+        //Tiles are one column wide, so the row starts spanIndex positions before
+        int beforeRow = position - spanIndexes[position] - 1;
+        return beforeRow < 0 || kinds[beforeRow] == KIND_BREAK;
+    }
+
+    private void ensure(int position) {
+        if (changedFrom < changedTo)
+            checkChanged();
+        if (position < validCount)
+            return;
+        if (position >= kinds.length) {
+            int capacity = Math.max(position + 1, Math.max(adapter.getItemCount(),
+                    kinds.length * 2));
+            spanIndexes = Arrays.copyOf(spanIndexes, capacity);
+            spanGroups = Arrays.copyOf(spanGroups, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+        }
+
+        int column = 0;
+        int group = 0;
+        if (validCount > 0) {
+            int last = validCount - 1;
+            column = kinds[last] == KIND_TILE ? spanIndexes[last] + 1 : spanCount;
+            group = spanGroups[last];
+            if (column >= spanCount) {
+                column = 0;
+                group++;
+            }
+        }
+        for (int i = validCount; i <= position; i++) {
+            byte kind = getKind(adapter.getItemViewType(i));
+            if (kind != KIND_TILE && column != 0) {
+                //Doesn't fit in what's left of the row
+                column = 0;
+                group++;
+            }
+            spanIndexes[i] = column;
+            spanGroups[i] = group;
+            kinds[i] = kind;
+            column = kind == KIND_TILE ? column + 1 : spanCount;
+            if (column >= spanCount) {
+                column = 0;
+                group++;
+            }
+        }
+        validCount = position + 1;
+    }
+
+    private static byte getKind(int viewType) {
+        if (viewType == ListItemType.GRID_ITEM.resId)
+            return KIND_TILE;
+        if (viewType == AwesomeViewTypes.HEADER.code || AwesomeViewTypes.isSubHeader(viewType))
+            return KIND_BREAK;
+        return KIND_ROW;
+    }
+
+    private class InvalidatingObserver extends RecyclerView.AdapterDataObserver {
+
+        @Override
+        public void onChanged() {
+            invalidate();
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+            //Showing/checking the checkboxes doesn't change the view types
+            if (!Payloads.isCheckBoxPayload(payload))
+                onItemsChanged(positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            onItemsChanged(positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            invalidateFrom(positionStart);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            invalidateFrom(positionStart);
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            invalidateFrom(Math.min(fromPosition, toPosition));
+        }
+    }
+}
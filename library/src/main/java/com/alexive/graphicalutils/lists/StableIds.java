@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import java.util.UUID;
+
+/**
+ * Turns the items' keys (strings, UUIDs, numbers...) into 64 bit ids, e.g. for
+ * {@link ListAdapter#getIdForItem(int)} or {@link ListDiffer.ItemCallback#getIdForItem(Object)}.
+ * The hash is 64 bits wide (unlike {@link Object#hashCode()}), so two of a million keys only
+ * get the same id with a probability of about 1 in 37 million. See
+ * {@link ListAdapter#setKeyCollisionCheckEnabled(boolean)} to catch it in debug builds.
+ * <p>
+ * The ids only depend on the keys, so they're the same across processes and can be saved.
+ */
+public final class StableIds {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private StableIds() {
+    }
+
+    /**
+     * @return The id for a key: {@link CharSequence}s, {@link UUID}s and integral
+     * {@link Number}s are hashed by their value, any other object by its toString().
+     */
+    public static long hash(Object key) {
+        if (key instanceof CharSequence)
+            return hash((CharSequence) key);
+        if (key instanceof UUID)
+            return hash((UUID) key);
+        if (key instanceof Long || key instanceof Integer || key instanceof Short ||
+                key instanceof Byte)
+            return hash(((Number) key).longValue());
+        return hash(String.valueOf(key));
+    }
+
+    public static long hash(CharSequence key) {
+        //FNV-1a over the chars, then mixed so every bit depends on every char
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            hash = (hash ^ (c & 0xFF)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return Hashing.fmix64(hash);
+    }
+
+    public static long hash(UUID key) {
+        return Hashing.fmix64(key.getMostSignificantBits() ^
+                Hashing.fmix64(key.getLeastSignificantBits()));
+    }
+
+    public static long hash(long key) {
+        return Hashing.fmix64(key);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.lists;
+
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+
+import com.alexive.graphicalutils.view.ViewUtils;
+
+/**
+ * Draws the subheader of the topmost visible item's section pinned to the top of the list,
+ * pushed up by the next section's subheader as it gets there.
+ * The pinned subheader is a view of the adapter's subheader layout, rebound (and measured) only
+ * when the section changes, so each frame costs the same no matter how long the list is.
+ * See {@link BaseAdapter#getStickySubheaderDecoration()}.
+ */
+final class StickySubheaderDecoration extends RecyclerView.ItemDecoration {
+
+    private final BaseAdapter adapter;
+    private AwesomeViewHolder header;
+    private int headerLayoutResId;
+    private int boundSection = -1;
+    private int boundWidth = -1;
+
+    StickySubheaderDecoration(BaseAdapter adapter) {
+        this.adapter = adapter;
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                boundSection = -1;
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount) {
+                boundSection = -1;
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+                //Showing/checking the checkboxes doesn't change the subheaders
+                if (!Payloads.isCheckBoxPayload(payload))
+                    boundSection = -1;
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                boundSection = -1;
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                boundSection = -1;
+            }
+
+            @Override
+            public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                boundSection = -1;
+            }
+        });
+    }
+
+    @Override
+    public void onDrawOver(Canvas c, RecyclerView parent, RecyclerView.State state) {
+        if (parent.getChildCount() == 0)
+            return;
+        View topChild = parent.getChildAt(0);
+        int position = parent.getChildAdapterPosition(topChild);
+        if (position == RecyclerView.NO_POSITION)
+            return;
+        int index = position - adapter.getRealAdapterPosition(0);
+        if (index < 0)
+            return; //The header view is showing
+        SectionIndex sections = adapter.getSectionIndex();
+        int section = sections.getSectionForIndex(index);
+        if (section < 0)
+            return;
+        //The subheader is in its place already
+        if (index == sections.getSectionStartForSection(section) &&
+                topChild.getTop() >= parent.getPaddingTop())
+            return;
+
+        int width = parent.getWidth() - parent.getPaddingLeft() - parent.getPaddingRight();
+        View headerView = getHeaderView(parent, section, width);
+
+        int top = parent.getPaddingTop();
+        int nextStart = sections.getNextSectionStart(index);
+        if (nextStart >= 0) {
+            RecyclerView.ViewHolder next = parent.findViewHolderForAdapterPosition(
+                    adapter.getRealAdapterPosition(nextStart));
+            if (next != null)
+                top = Math.min(top, next.itemView.getTop() - headerView.getHeight());
+        }
+
+        int save = c.save();
+        c.clipRect(parent.getPaddingLeft(), parent.getPaddingTop(),
+                parent.getWidth() - parent.getPaddingRight(), parent.getHeight());
+        c.translate(parent.getPaddingLeft(), top);
+        headerView.draw(c);
+        c.restoreToCount(save);
+    }
+
+    private View getHeaderView(RecyclerView parent, int section, int width) {
+        int layoutResId = adapter.shouldSubHeaderTextColorBeAccent() ?
+                adapter.getSubheaderLayoutResId() : adapter.getSubHeaderNoAccentLayoutResId();
+        if (header == null || layoutResId != headerLayoutResId) {
+            View view = LayoutInflater.from(parent.getContext())
+                    .inflate(layoutResId, parent, false);
+            //The list shows under it, so it can't be transparent
+            if (view.getBackground() == null) {
+                TypedArray a = parent.getContext().obtainStyledAttributes(
+                        new int[]{android.R.attr.colorBackground});
+                view.setBackgroundColor(a.getColor(0, 0xFFFFFFFF));
+                a.recycle();
+            }
+            header = AwesomeViewHolder.forInflatedView(view);
+            headerLayoutResId = layoutResId;
+            boundSection = -1;
+        }
+        View view = header.itemView;
+        if (section != boundSection) {
+            header.text1.setText(adapter.getSubHeaderText(
+                    adapter.getSectionIndex().getSectionStartForSection(section)));
+            boundSection = section;
+            boundWidth = -1;
+        }
+        if (width != boundWidth) {
+            int height = view.getLayoutParams().height > 0 ? view.getLayoutParams().height :
+                    ViewUtils.convertDPtoPixels(parent.getContext(), 48);
+            view.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+            view.layout(0, 0, width, height);
+            boundWidth = width;
+        }
+        return view;
+    }
+}
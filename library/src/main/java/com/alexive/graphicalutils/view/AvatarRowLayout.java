@@ -0,0 +1,284 @@
+/*
+ * Copyright 2017 J. Alexandre Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alexive.graphicalutils.view;
+
+import android.content.Context;
+import android.support.v4.view.MarginLayoutParamsCompat;
+import android.support.v4.view.ViewCompat;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.alexive.graphicalutils.R;
+
+/**
+ * Lays out a list item with an avatar, one or two lines of text, an optional trailing
+ * button/checkbox and a divider, in a single measure and layout pass, using the material
+ * list metrics (56dp rows for a single line, 72dp for two, text starting at 72dp).
+ * <p>
+ * Children are identified by their ids: {@code R.id.imageView} (avatar),
+ * {@code android.R.id.text1}, {@code android.R.id.text2}, {@code R.id.imageButton},
+ * {@code R.id.checkBox} and {@code R.id.separator} (divider). Except for the text1, all of them
+ * are optional. If there's no button, the checkbox is drawn on top of the avatar. The
+ * divider's start margin is respected, the other children's margins aren't.
+ * <p>
+ * The layout's padding is respected and, in right to left layouts, it's mirrored (the avatar
+ * goes on the right).
+ */
+public class AvatarRowLayout extends ViewGroup {
+
+    private final int keyline;
+    private final int edgeSpace;
+    private final int avatarSize;
+    private final int textTop;
+    private final int singleLineHeight;
+    private final int twoLineHeight;
+
+    private boolean childrenResolved = false;
+    private View avatar;
+    private View text1;
+    private View text2;
+    private View button;
+    private View checkBox;
+    private View divider;
+
+    public AvatarRowLayout(Context context) {
+        this(context, null);
+    }
+
+    public AvatarRowLayout(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        keyline = ViewUtils.convertDPtoPixels(context, 72);
+        edgeSpace = ViewUtils.convertDPtoPixels(context, 16);
+        avatarSize = ViewUtils.convertDPtoPixels(context, 38);
+        textTop = ViewUtils.convertDPtoPixels(context, 20);
+        singleLineHeight = ViewUtils.convertDPtoPixels(context, 56);
+        twoLineHeight = ViewUtils.convertDPtoPixels(context, 72);
+    }
+
+    @Override
+    protected void onFinishInflate() {
+        super.onFinishInflate();
+        resolveChildren();
+    }
+
+    @Override
+    public void addView(View child, int index, ViewGroup.LayoutParams params) {
+        super.addView(child, index, params);
+        childrenResolved = false;
+    }
+
+    @Override
+    public void removeView(View view) {
+        super.removeView(view);
+        childrenResolved = false;
+    }
+
+    @Override
+    public void removeViewAt(int index) {
+        super.removeViewAt(index);
+        childrenResolved = false;
+    }
+
+    @Override
+    public void removeViews(int start, int count) {
+        super.removeViews(start, count);
+        childrenResolved = false;
+    }
+
+    @Override
+    public void removeAllViews() {
+        super.removeAllViews();
+        childrenResolved = false;
+    }
+
+    @Override
+    public void removeViewInLayout(View view) {
+        super.removeViewInLayout(view);
+        childrenResolved = false;
+    }
+
+    @Override
+    public void removeViewsInLayout(int start, int count) {
+        super.removeViewsInLayout(start, count);
+        childrenResolved = false;
+    }
+
+    @Override
+    public void removeAllViewsInLayout() {
+        super.removeAllViewsInLayout();
+        childrenResolved = false;
+    }
+
+    private void resolveChildren() {
+        avatar = findChild(R.id.imageView);
+        text1 = findChild(android.R.id.text1);
+        text2 = findChild(android.R.id.text2);
+        button = findChild(R.id.imageButton);
+        checkBox = findChild(R.id.checkBox);
+        divider = findChild(R.id.separator);
+        childrenResolved = true;
+    }
+
+    /**
+     * Like findViewById, but only looks at the direct children.
+     */
+    private View findChild(int id) {
+        for (int i = 0; i < getChildCount(); i++)
+            if (getChildAt(i).getId() == id)
+                return getChildAt(i);
+        return null;
+    }
+
+    private static boolean isShown(View view) {
+        return view != null && view.getVisibility() != GONE;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (!childrenResolved)
+            resolveChildren();
+        int verticalPadding = getPaddingTop() + getPaddingBottom();
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int height;
+        if (MeasureSpec.getMode(heightMeasureSpec) == MeasureSpec.EXACTLY)
+            height = Math.max(MeasureSpec.getSize(heightMeasureSpec) - verticalPadding, 0);
+        else
+            height = isShown(text2) ? twoLineHeight : singleLineHeight;
+        //From here on, the sizes are the content's, without the padding
+        int measuredWidth = width;
+        width = Math.max(width - getPaddingLeft() - getPaddingRight(), 0);
+
+        int exactAvatar = MeasureSpec.makeMeasureSpec(avatarSize, MeasureSpec.EXACTLY);
+        if (isShown(avatar))
+            avatar.measure(exactAvatar, exactAvatar);
+
+        int wrapWidth = MeasureSpec.makeMeasureSpec(width, MeasureSpec.AT_MOST);
+        int wrapHeight = MeasureSpec.makeMeasureSpec(height, MeasureSpec.AT_MOST);
+        int trailingWidth = 0;
+        if (isShown(checkBox)) {
+            checkBox.measure(wrapWidth, wrapHeight);
+            if (button != null)
+                trailingWidth = checkBox.getMeasuredWidth();
+        }
+        if (isShown(button)) {
+            button.measure(wrapWidth, wrapHeight);
+            trailingWidth = Math.max(trailingWidth, button.getMeasuredWidth());
+        }
+        //The button (or checkbox) slot has 16dp on both sides, like the XML layouts had
+        int textRight = button != null ? width - trailingWidth - 2 * edgeSpace :
+                width - edgeSpace;
+        int textWidth = MeasureSpec.makeMeasureSpec(Math.max(textRight - keyline, 0),
+                MeasureSpec.AT_MOST);
+        if (isShown(text1))
+            text1.measure(textWidth, wrapHeight);
+        if (isShown(text2))
+            text2.measure(textWidth, wrapHeight);
+
+        if (isShown(divider)) {
+            int dividerWidth = Math.max(width - getDividerStartMargin(), 0);
+            int dividerHeight = Math.max(divider.getLayoutParams().height, 1);
+            divider.measure(MeasureSpec.makeMeasureSpec(dividerWidth, MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(dividerHeight, MeasureSpec.EXACTLY));
+        }
+        setMeasuredDimension(measuredWidth, height + verticalPadding);
+    }
+
+    private int getDividerStartMargin() {
+        LayoutParams params = divider.getLayoutParams();
+        return params instanceof MarginLayoutParams ?
+                MarginLayoutParamsCompat.getMarginStart((MarginLayoutParams) params) : 0;
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        boolean rtl = ViewCompat.getLayoutDirection(this) == ViewCompat.LAYOUT_DIRECTION_RTL;
+        //The x coordinates below are from the start edge of the content
+        int start = rtl ? r - l - getPaddingRight() : getPaddingLeft();
+        int width = r - l - getPaddingLeft() - getPaddingRight();
+        int top = getPaddingTop();
+        int height = b - t - top - getPaddingBottom();
+        int centerY = top + height / 2;
+
+        if (isShown(avatar))
+            layoutCentered(avatar, start, rtl, edgeSpace + avatarSize / 2, centerY);
+        if (isShown(button))
+            layoutChild(button, start, rtl, width - edgeSpace - button.getMeasuredWidth(),
+                    centerY - button.getMeasuredHeight() / 2);
+        if (isShown(checkBox)) {
+            if (button != null)
+                layoutCentered(checkBox, start, rtl,
+                        width - edgeSpace - checkBox.getMeasuredWidth() / 2, centerY);
+            else
+                layoutCentered(checkBox, start, rtl, edgeSpace + avatarSize / 2, centerY);
+        }
+
+        int textY = top + textTop;
+        if (isShown(text1)) {
+            layoutChild(text1, start, rtl, keyline, textY);
+            textY += text1.getMeasuredHeight();
+        }
+        if (isShown(text2))
+            layoutChild(text2, start, rtl, keyline, textY);
+
+        if (isShown(divider))
+            layoutChild(divider, start, rtl, getDividerStartMargin(),
+                    top + height - divider.getMeasuredHeight());
+    }
+
+    /**
+     * Lays the child out at x from the start edge (start, in the layout's coordinates), mirrored
+     * if rtl.
+     */
+    private static void layoutChild(View child, int start, boolean rtl, int x, int top) {
+        int left = rtl ? start - x - child.getMeasuredWidth() : start + x;
+        child.layout(left, top, left + child.getMeasuredWidth(),
+                top + child.getMeasuredHeight());
+    }
+
+    private static void layoutCentered(View child, int start, boolean rtl, int centerX,
+                                       int centerY) {
+        layoutChild(child, start, rtl, centerX - child.getMeasuredWidth() / 2,
+                centerY - child.getMeasuredHeight() / 2);
+    }
+
+    @Override
+    public LayoutParams generateLayoutParams(AttributeSet attrs) {
+        return new MarginLayoutParams(getContext(), attrs);
+    }
+
+    @Override
+    protected LayoutParams generateDefaultLayoutParams() {
+        return new MarginLayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT);
+    }
+
+    @Override
+    protected LayoutParams generateLayoutParams(LayoutParams p) {
+        return p instanceof MarginLayoutParams ? new MarginLayoutParams((MarginLayoutParams) p) :
+                new MarginLayoutParams(p);
+    }
+
+    @Override
+    protected boolean checkLayoutParams(LayoutParams p) {
+        return p instanceof MarginLayoutParams;
+    }
+
+    @Override
+    public boolean shouldDelayChildPressedState() {
+        return false;
+    }
+}
@@ -18,6 +18,8 @@ package com.alexive.graphicalutils.view;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
 import android.util.AttributeSet;
 import android.widget.ImageView;
 
@@ -25,13 +27,30 @@ import com.alexive.graphicalutils.R;
 
 /**
  * Subclass of image view capable of having a proportional size.
- * So far it supports 16:9, 4:3, 1:1 and no proportion
+ * Supports 16:9, 4:3, 1:1, "at least square", no proportion and any other aspect ratio
+ * ({@link #setAspectRatio(float)}).
+ * <p>
+ * When the width is given by the parent (match_parent, a fixed size, a grid cell...) and the
+ * aspect ratio is known, the size doesn't depend on the image: it's measured without going
+ * through ImageView's measuring and changing the image doesn't make it be laid out again.
+ * Its size is known before it's drawn for the first time, see
+ * {@link #setOnSizeResolvedListener(OnSizeResolvedListener)}.
  */
 public class ProportionalImageView extends ImageView {
 
     private int proportionCode = -1;
     private boolean heightAsRef = false;
-    private int maxWidth;
+    private int maxWidth = Integer.MAX_VALUE;
+    /**
+     * Width / height, 0 if the proportion isn't a fixed ratio.
+     */
+    private float aspectRatio = 0;
+    /**
+     * Whether the last measure ignored the drawable, so swapping it can't change the size.
+     */
+    private boolean sizeIndependentOfDrawable = false;
+    private boolean blockLayoutRequests = false;
+    private OnSizeResolvedListener onSizeResolvedListener;
 
     public ProportionalImageView(Context context) {
         super(context);
@@ -43,30 +62,99 @@ public class ProportionalImageView extends ImageView {
                 attrs,
                 R.styleable.ProportionalImageView,
                 0, 0);
-        proportionCode = a.getInt(R.styleable.ProportionalImageView_proportion, 0);
+        setProportionCode(a.getInt(R.styleable.ProportionalImageView_proportion, 0));
         maxWidth = (int) a.getDimension(R.styleable.ProportionalImageView_maxWidth, Integer.MAX_VALUE);
+        float ratio = a.getFloat(R.styleable.ProportionalImageView_aspectRatio, 0);
+        if (ratio > 0)
+            setAspectRatio(ratio);
         a.recycle();
     }
 
+    private void setProportionCode(int code) {
+        proportionCode = code;
+        float ratio;
+        switch (code) {
+            case 0:
+                ratio = 1;
+                break;
+            case 169:
+                ratio = 16f / 9f;
+                break;
+            case 43:
+                ratio = 4f / 3f;
+                break;
+            default:
+                ratio = 0;
+        }
+        if (ratio != aspectRatio) {
+            aspectRatio = ratio;
+            requestLayout();
+        }
+    }
+
     public void setSquare() {
-        proportionCode = 0;
+        setProportionCode(0);
     }
 
     public void setSquareSideIsHeight() {
         heightAsRef = true;
+        requestLayout();
     }
 
     public void setSixteenNine() {
-        proportionCode = 169;
+        setProportionCode(169);
     }
 
     public void setFourThree() {
-        proportionCode = 43;
+        setProportionCode(43);
+    }
+
+    /**
+     * Makes the view's height its width divided by aspectRatio, e.g. with the ratio of the
+     * image that's going to be shown, known beforehand.
+     *
+     * @param aspectRatio Width / height, or 0 for no proportion.
+     */
+    public void setAspectRatio(float aspectRatio) {
+        proportionCode = aspectRatio > 0 ? Integer.MAX_VALUE : -1;
+        if (aspectRatio < 0)
+            aspectRatio = 0;
+        if (aspectRatio != this.aspectRatio) {
+            this.aspectRatio = aspectRatio;
+            requestLayout();
+        }
     }
 
+    /**
+     * @return Width / height, or 0 if the proportion isn't a fixed ratio.
+     */
+    public float getAspectRatio() {
+        return aspectRatio;
+    }
+
+    /**
+     * Sets a listener called as soon as the view's size is known (and whenever it changes),
+     * before it's drawn. Image loaders can use it to decode images at exactly that size.
+     * If the size is known already, the listener is called right away.
+     */
+    public void setOnSizeResolvedListener(OnSizeResolvedListener listener) {
+        onSizeResolvedListener = listener;
+        if (listener != null && getWidth() > 0 && getHeight() > 0)
+            listener.onSizeResolved(this, getWidth(), getHeight());
+    }
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        //A square whose side is the height keeps whatever ImageView measures
+        boolean ratioApplies = aspectRatio > 0 && !(heightAsRef && proportionCode == 0);
+        if (ratioApplies && MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.EXACTLY) {
+            //The image doesn't matter, skip ImageView's measuring
+            int width = Math.min(MeasureSpec.getSize(widthMeasureSpec), maxWidth);
+            setMeasuredDimension(width, (int) (width / aspectRatio + 0.5f));
+            sizeIndependentOfDrawable = true;
+            return;
+        }
+        sizeIndependentOfDrawable = false;
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
         if (proportionCode == -1)
             return;
@@ -76,15 +164,52 @@ public class ProportionalImageView extends ImageView {
             mWidth = maxWidth;
         int mHeight = getMeasuredHeight();
 
-        boolean square = proportionCode == 0;
-        if (square)
-            mHeight = !heightAsRef ? mWidth : mHeight;
-        else if (proportionCode == 1)
+        if (proportionCode == 1)
             mHeight = mHeight > mWidth ? mHeight : mWidth;
-        else if (proportionCode == 169)
-            mHeight = (int) (mWidth * 9f / 16f + 0.5f);
-        else if (proportionCode == 43)
-            mHeight = (int) (mWidth * 3f / 4f + 0.5f);
+        else if (ratioApplies)
+            mHeight = (int) (mWidth / aspectRatio + 0.5f);
         setMeasuredDimension(mWidth, mHeight);
     }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (onSizeResolvedListener != null && w > 0 && h > 0)
+            onSizeResolvedListener.onSizeResolved(this, w, h);
+    }
+
+    @Override
+    public void requestLayout() {
+        if (!blockLayoutRequests)
+            super.requestLayout();
+    }
+
+    @Override
+    public void setImageDrawable(Drawable drawable) {
+        //setImageBitmap goes through here as well
+        blockLayoutRequests = sizeIndependentOfDrawable;
+        super.setImageDrawable(drawable);
+        blockLayoutRequests = false;
+    }
+
+    @Override
+    public void setImageResource(int resId) {
+        blockLayoutRequests = sizeIndependentOfDrawable;
+        super.setImageResource(resId);
+        blockLayoutRequests = false;
+    }
+
+    @Override
+    public void setImageURI(Uri uri) {
+        blockLayoutRequests = sizeIndependentOfDrawable;
+        super.setImageURI(uri);
+        blockLayoutRequests = false;
+    }
+
+    /**
+     * Called when a {@link ProportionalImageView}'s size is known.
+     */
+    public interface OnSizeResolvedListener {
+        void onSizeResolved(ProportionalImageView view, int width, int height);
+    }
 }
@@ -52,10 +52,24 @@ public class ViewUtils {
      * @param view The view to animate/set as GONE.
      */
     public static void animateSetViewVisibilityGone(final View view){
-        if (view.getVisibility() == View.GONE)
+        animateHideView(view, View.GONE);
+    }
+
+    /**
+     * Sets the view visibility as {@link View#INVISIBLE} with an animation. Unlike
+     * {@link #animateSetViewVisibilityGone(View)}, the view keeps its space, so its parent
+     * doesn't need a new layout pass.
+     * @param view The view to animate/set as INVISIBLE.
+     */
+    public static void animateSetViewVisibilityInvisible(final View view){
+        animateHideView(view, View.INVISIBLE);
+    }
+
+    private static void animateHideView(final View view, final int visibility){
+        if (view.getVisibility() == visibility)
             return;
         if (Build.VERSION.SDK_INT < 12)
-            view.setVisibility(View.GONE);
+            view.setVisibility(visibility);
         else {
             ViewPropertyAnimator animator = view.animate();
 //      animator.cancel(); //Only on API 14 cuz of this!
@@ -68,7 +82,7 @@ public class ViewUtils {
                 @SuppressLint("NewApi")
                 @Override
                 public void onAnimationEnd(Animator animation) {
-                    view.setVisibility(View.GONE);
+                    view.setVisibility(visibility);
                     view.setScaleX(0);
                     view.setScaleY(0);
                 }
@@ -103,7 +117,7 @@ public class ViewUtils {
                 @Override
                 public void onAnimationStart(Animator animation) {
                     view.setVisibility(View.VISIBLE);
-                    //The view is hidden if animateSetViewVisibilityGone has
+                    //The view is hidden if animateSetViewVisibilityGone/Invisible has
                     //been called before
                 }
 